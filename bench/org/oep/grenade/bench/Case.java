@@ -0,0 +1,39 @@
+package org.oep.grenade.bench;
+
+/**
+ * One thing to measure. The harness calls setup, which isn't timed, and
+ * then run with however many operations it wants timed.
+ */
+public abstract class Case {
+	private final String mName;
+
+	protected Case(String name) {
+		mName = name;
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * Get ready for a batch of operations. This is not timed.
+	 */
+	public void setup() {
+	}
+
+	/**
+	 * How many operations can be run before setup has to be called again,
+	 * for cases that use something up. 0 means setup is only needed once
+	 * per measurement.
+	 */
+	public int getOpsPerSetup() {
+		return 0;
+	}
+
+	/**
+	 * Run ops operations
+	 * @return something that depends on every result, so the JIT can't
+	 *         throw the work away
+	 */
+	public abstract long run(int ops);
+}
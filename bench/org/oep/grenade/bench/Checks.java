@@ -0,0 +1,318 @@
+package org.oep.grenade.bench;
+
+import java.util.Random;
+
+import org.oep.grenade.sound.SoftwareMixer;
+import org.oep.grenade.sound.SoundEffects;
+import org.oep.grenade.world.ChunkedTerrain;
+import org.oep.grenade.world.Grenade;
+import org.oep.grenade.world.Player;
+import org.oep.grenade.world.Terrain;
+import org.oep.grenade.world.Trajectory;
+import org.oep.grenade.world.World;
+
+/**
+ * Regression checks for bugs in the world package that are easy to
+ * bring back. Each check sets up the case that went wrong and says
+ * whether it still does:
+ *
+ *   java -cp out org.oep.grenade.bench.Checks
+ *
+ * It exits with 1 if any check fails.
+ */
+public class Checks {
+	private static final long SEED = 42;
+
+	private static int sFailures;
+
+	public static void main(String[] args) {
+		bodyJustLeftOfWorld();
+		previewMatchesThrow();
+		previewFollowsBlast();
+		batchedBlastSurvivesEviction();
+		blastsShareVoices();
+		playerLandsOnPlayer();
+		stepAllocatesNothing();
+
+		if(sFailures > 0) {
+			System.out.println(sFailures + " failed");
+			System.exit(1);
+		}
+	}
+
+	private static void check(boolean ok, String what) {
+		System.out.println((ok ? "ok      " : "FAILED  ") + what);
+		if(!ok) sFailures++;
+	}
+
+	/**
+	 * A body a fraction of a pixel past the left edge was swept as being
+	 * in the wall but tested as being in column 0, so it was never warped
+	 * back in and hung in the air for good.
+	 */
+	private static void bodyJustLeftOfWorld() {
+		Terrain terrain = new Terrain(200, 150, 50, 200, new Random(SEED));
+		World world = new World(terrain, new Random(SEED));
+		world.setPlayerSize(World.TURN_RED, 11, 22);
+		world.setPlayerSize(World.TURN_BLUE, 11, 22);
+
+		Player red = world.getRedPlayer();
+		red.placeAt(-0.1f, terrain.absAt(0) - 20);
+		red.setVelocity(0, 0);
+		red.setPhysics(true);
+
+		for(int i = 0; i < 30 * World.FRAMES_PER_SECOND && !world.isSettled(); i++) {
+			world.step();
+		}
+
+		check(red.getX() >= 0 && red.getX() < terrain.getWidth(),
+				"a body at x = -0.1 is brought back inside the world");
+		check(world.isSettled(), "a body at x = -0.1 comes to rest");
+	}
+
+	/**
+	 * The preview bounced with the velocity from a step before the one
+	 * that hit the ground, so where it showed the grenade landing again
+	 * was off from where a real throw landed.
+	 */
+	private static void previewMatchesThrow() {
+		Terrain terrain = new Terrain(400, 300, 100, 250, new Random(SEED));
+		World world = new World(terrain, new Random(SEED));
+		world.setPlayerSize(World.TURN_RED, 11, 22);
+		world.setPlayerSize(World.TURN_BLUE, 11, 22);
+		world.setGrenadeSize(6, 6);
+
+		// Keep the players well out of the way
+		world.getRedPlayer().placeAt(5, terrain.absAt(5));
+		world.getBluePlayer().placeAt(395, terrain.absAt(395));
+
+		float x = 150, y = terrain.absAt(150) - 40;
+		float ux = (float) Math.cos(-1.3), uy = (float) Math.sin(-1.3);
+		float power = 220;
+
+		Trajectory preview = new Trajectory();
+		preview.aim(terrain, x, y, ux, uy, power);
+		float[] dots = preview.getDots();
+		int last = preview.getDotCount() - 1;
+
+		world.startFuse();
+		world.throwGrenade(x, y, power * ux, power * uy);
+
+		// The last dot is where the preview stopped following the bounce,
+		// which the grenade should pass through on one of its steps
+		float nearest = Float.MAX_VALUE;
+		while(world.getGrenadeCount() > 0) {
+			world.step();
+			if(world.getGrenadeCount() == 0) break;
+
+			Grenade g = world.getGrenade(0);
+			float dx = g.getX() - dots[2 * last], dy = g.getY() - dots[2 * last + 1];
+			nearest = Math.min(nearest, (float) Math.sqrt(dx * dx + dy * dy));
+		}
+
+		check(nearest < 0.1f, "the preview follows a thrown grenade past its first bounce");
+	}
+
+	/**
+	 * The preview was kept as long as the aim barely moved, even after a
+	 * blast had changed the ground under it, so it went on showing a
+	 * bounce off ground that had been blown away
+	 */
+	private static void previewFollowsBlast() {
+		Terrain terrain = new Terrain(400, 300, 100, 250, new Random(SEED));
+		float x = 150, y = terrain.absAt(150) - 40;
+		float ux = (float) Math.cos(-1.3), uy = (float) Math.sin(-1.3);
+
+		Trajectory preview = new Trajectory();
+		preview.aim(terrain, x, y, ux, uy, 220);
+
+		// Blow a hole where the first bounce was
+		float[] dots = preview.getDots();
+		int bounce = 0;
+		for(int i = 1; i < preview.getDotCount(); i++) {
+			if(dots[2 * i + 1] > dots[2 * bounce + 1]) bounce = i;
+		}
+		terrain.carveCircle((int) dots[2 * bounce], (int) dots[2 * bounce + 1], 30, null);
+
+		check(preview.aim(terrain, x, y, ux, uy, 220), "the preview is redone after a blast");
+	}
+
+	/**
+	 * A batch of blasts took one span out of each column of the window
+	 * but was logged in the world as separate circles. Where the circles
+	 * were stacked in a column that came to something else, so the ground
+	 * jumped when a chunk was rebuilt from its log.
+	 */
+	private static void batchedBlastSurvivesEviction() {
+		ChunkedTerrain world = new ChunkedTerrain(SEED, 150, 50, 200, 2);
+		int worldX = 200, width = 200;
+		Terrain window = new Terrain(world, worldX, width);
+
+		// A column of blasts down through the ground, overlapping and
+		// straddling a chunk edge
+		int[] x = { 50, 58, 54, 70 }, y = new int[4], radius = { 20, 20, 12, 25 };
+		for(int i = 0; i < x.length; i++) {
+			y[i] = window.getBase() - window.at(x[i]) + 25 * i;
+		}
+		window.carveCircles(x, y, radius, x.length, null);
+
+		// Read far enough away that the chunks under the window are
+		// thrown out and have to be rebuilt
+		world.at(20 * ChunkedTerrain.CHUNK_WIDTH);
+		world.at(21 * ChunkedTerrain.CHUNK_WIDTH);
+
+		int differ = 0;
+		for(int i = 0; i < width; i++) {
+			if(window.at(i) != world.at(worldX + i)) differ++;
+		}
+		check(differ == 0, "a batch of blasts is the same in the window and the world (" + differ + " columns differ)");
+	}
+
+	/**
+	 * Grenades that go off in the same step are heard once, as a few
+	 * explosions, however many there are. Otherwise a barrage would take
+	 * every voice and cut off anything more important.
+	 */
+	private static void blastsShareVoices() {
+		Terrain terrain = new Terrain(400, 300, 100, 250, new Random(SEED));
+		World world = new World(terrain, new Random(SEED));
+		world.setPlayerSize(World.TURN_RED, 11, 22);
+		world.setPlayerSize(World.TURN_BLUE, 11, 22);
+		world.setGrenadeSize(6, 6);
+		world.getRedPlayer().placeAt(5, terrain.absAt(5));
+		world.getBluePlayer().placeAt(395, terrain.absAt(395));
+
+		SoftwareMixer mixer = Replays.newMixer();
+		SoundEffects effects = Replays.newEffects(mixer);
+		effects.setWidth(terrain.getWidth());
+		world.setListener(effects);
+
+		// All thrown in the same step, so they share a fuse
+		int grenades = 8;
+		world.startFuse();
+		for(int i = 0; i < grenades; i++) {
+			float x = 150 + 10 * i;
+			world.throwGrenade(x, terrain.absAt((int) x) - 30, 0, 0);
+		}
+
+		int frames = Replays.SAMPLE_RATE / World.FRAMES_PER_SECOND;
+		short[] out = new short[2 * frames];
+		int before = 0;
+		while(world.getGrenadeCount() == grenades) {
+			before = mixer.getActiveVoices();
+			world.step();
+			mixer.mix(out, frames);
+		}
+
+		check(world.getGrenadeCount() == 0, "grenades thrown together go off together");
+		check(before == 0 && mixer.getActiveVoices() == SoundEffects.EXPLOSION_VOICES,
+				grenades + " blasts in one step play on " + mixer.getActiveVoices() + " voices");
+	}
+
+	/**
+	 * A player that fell onto the other was held up on their head, where
+	 * it was never near enough the ground to fall asleep, so the world
+	 * never settled and nobody could throw again. Pushing players apart
+	 * could also put one through the ground or out of the world.
+	 */
+	private static void playerLandsOnPlayer() {
+		Terrain terrain = new Terrain(200, 150, 50, 200, new Random(SEED));
+
+		Player red = dropPlayerOnPlayer(terrain, 100, 100);
+		check(red != null, "a player dropped on the other comes to rest");
+		check(red != null && Math.abs(red.getY() - terrain.absAt((int) red.getX())) < 1,
+				"a player dropped on the other ends up on the ground");
+
+		red = dropPlayerOnPlayer(terrain, 0.5f, 3);
+		check(red != null && red.getX() >= 0 && red.getX() < terrain.getWidth(),
+				"a player pushed off the other at the edge stays in the world");
+	}
+
+	/**
+	 * Drop red from above on to blue, asleep on the ground
+	 * @return red once everything is still, or null if it never is
+	 */
+	private static Player dropPlayerOnPlayer(Terrain terrain, float x, int blueX) {
+		World world = new World(terrain, new Random(SEED));
+		world.setPlayerSize(World.TURN_RED, 11, 22);
+		world.setPlayerSize(World.TURN_BLUE, 11, 22);
+
+		Player red = world.getRedPlayer(), blue = world.getBluePlayer();
+		blue.placeAt(blueX, terrain.absAt(blueX));
+		red.placeAt(x, blue.getY() - 40);
+		red.setVelocity(0, 0);
+		red.setPhysics(true);
+
+		for(int i = 0; i < 30 * World.FRAMES_PER_SECOND; i++) {
+			if(world.isSettled()) return red;
+			world.step();
+		}
+		return null;
+	}
+
+	/**
+	 * Once a match is going, stepping the world is meant to allocate
+	 * nothing, with or without a grenade in the air, so the game never
+	 * stops for the garbage collector
+	 */
+	private static void stepAllocatesNothing() {
+		if(Harness.allocatedBytes() < 0) {
+			System.out.println("skipped a step allocates nothing, as this JVM can't count allocations");
+			return;
+		}
+
+		Terrain terrain = new Terrain(400, 300, 100, 250, new Random(SEED));
+		World world = new World(terrain, new Random(SEED));
+		world.setPlayerSize(World.TURN_RED, 11, 22);
+		world.setPlayerSize(World.TURN_BLUE, 11, 22);
+		world.setGrenadeSize(6, 6);
+
+		// Throw one all the way through first, so the spare grenades,
+		// the giblets and the clouds have all been made
+		throwAcross(world, terrain);
+		settle(world);
+
+		// The JIT charges a few hundred bytes to the thread while it
+		// compiles the step, which can land in any one round. Something
+		// the step itself allocated would show up in every round, so the
+		// least of a few is what counts.
+		long idle = Long.MAX_VALUE, flying = Long.MAX_VALUE;
+		for(int round = 0; round < ROUNDS; round++) {
+			idle = Math.min(idle, allocatedBy(world, 20000));
+
+			throwAcross(world, terrain);
+			flying = Math.min(flying, allocatedBy(world, World.GRENADE_FUSE / 2));
+			settle(world);
+		}
+
+		check(idle == 0, "an idle step allocates nothing (" + idle + " bytes)");
+		check(flying == 0, "a step with a grenade in the air allocates nothing (" + flying + " bytes)");
+	}
+
+	/** How many times the allocation checks are run */
+	private static final int ROUNDS = 5;
+
+	private static void throwAcross(World world, Terrain terrain) {
+		world.startFuse();
+		world.throwGrenade(200, terrain.absAt(200) - 60, 40, -120);
+	}
+
+	private static void settle(World world) {
+		for(int i = 0; i < 60 * World.FRAMES_PER_SECOND && !world.isSettled(); i++) {
+			world.step();
+		}
+	}
+
+	/**
+	 * How many bytes stepping the world the given number of times
+	 * allocates
+	 */
+	private static long allocatedBy(World world, int steps) {
+		long overhead = Harness.allocationOverhead();
+		long before = Harness.allocatedBytes();
+		for(int i = 0; i < steps; i++) {
+			world.step();
+		}
+		return Math.max(0, Harness.allocatedBytes() - before - overhead);
+	}
+}
@@ -0,0 +1,192 @@
+package org.oep.grenade.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the benchmark cases on a desktop JVM. The world package has no
+ * Android in it, so it can be built and measured on its own:
+ *
+ *   javac -d out src/org/oep/grenade/world/*.java bench/org/oep/grenade/bench/*.java
+ *   java -cp out org.oep.grenade.bench.Harness [filter] [width=320,480] [profile=flat] [bodies=16]
+ *
+ * The filter picks cases whose name contains it. Each case is warmed up and
+ * then measured in batches of about BATCH_MS, and reported as operations per
+ * second with the spread between batches and bytes allocated per operation.
+ */
+public class Harness {
+	private static final int WARMUP = 5;
+	private static final int MEASURE = 10;
+	private static final long BATCH_MS = 100;
+
+	private static int[] sWidths = { 320, 480, 2048 };
+	private static Profile[] sProfiles = Profile.ALL;
+	private static int[] sBodies = { 16, 96, 512 };
+	private static String sFilter = "";
+
+	/** Keeps the results alive so the work can't be optimised away */
+	private static long sSink;
+
+	/** Bytes allocated inside run so far, or -1 if the JVM can't tell */
+	private static long sAllocated;
+
+	/**
+	 * What reading allocatedBytes twice allocates by itself, which is taken
+	 * off every chunk so that only the run is counted
+	 */
+	private static long sAllocationOverhead;
+
+	public static void main(String[] args) {
+		for(String arg : args) {
+			if(arg.startsWith("width=")) sWidths = parseInts(arg.substring(6));
+			else if(arg.startsWith("bodies=")) sBodies = parseInts(arg.substring(7));
+			else if(arg.startsWith("profile=")) sProfiles = parseProfiles(arg.substring(8));
+			else sFilter = arg;
+		}
+
+		sAllocationOverhead = allocationOverhead();
+
+		System.out.println(String.format("%-22s %6s %-8s %6s %14s %7s %10s",
+				"case", "width", "profile", "bodies", "ops/s", "+/-", "B/op"));
+
+		for(int width : sWidths) {
+			for(Profile profile : sProfiles) {
+				for(Case c : TerrainCases.all(width, profile)) {
+					measure(c, width, profile, -1);
+				}
+				for(int bodies : sBodies) {
+					for(Case c : PhysicsCases.all(width, profile, bodies)) {
+						measure(c, width, profile, bodies);
+					}
+				}
+			}
+		}
+
+		if(sSink == 42) System.out.println();
+	}
+
+	private static void measure(Case c, int width, Profile profile, int bodies) {
+		if(c.getName().indexOf(sFilter) < 0) return;
+
+		int ops = calibrate(c);
+
+		for(int i = 0; i < WARMUP; i++) {
+			batch(c, ops);
+		}
+
+		double[] rates = new double[MEASURE];
+		sAllocated = 0;
+		for(int i = 0; i < MEASURE; i++) {
+			rates[i] = ops * 1e9 / batch(c, ops);
+		}
+		long allocated = sAllocated;
+
+		double mean = 0;
+		for(double r : rates) mean += r;
+		mean /= MEASURE;
+
+		double variance = 0;
+		for(double r : rates) variance += (r - mean) * (r - mean);
+		double spread = 100 * Math.sqrt(variance / (MEASURE - 1)) / mean;
+
+		String perOp = allocated < 0 ? "n/a"
+				: String.format("%.2f", allocated / (double) ((long) ops * MEASURE));
+
+		System.out.println(String.format("%-22s %6d %-8s %6s %14.0f %6.1f%% %10s",
+				c.getName(), width, profile.getName(), bodies < 0 ? "-" : Integer.toString(bodies),
+				mean, spread, perOp));
+	}
+
+	/**
+	 * Find how many operations take about BATCH_MS
+	 */
+	private static int calibrate(Case c) {
+		int ops = 1;
+		while(ops < (1 << 30)) {
+			long ns = batch(c, ops);
+			if(ns >= BATCH_MS * 1000000 / 4) {
+				return (int) Math.max(1, Math.min(1L << 30, ops * BATCH_MS * 1000000 / ns));
+			}
+			ops *= 2;
+		}
+		return ops;
+	}
+
+	/**
+	 * Run ops operations, calling setup between runs where the case needs
+	 * it, and timing only the runs. What the runs allocate is added to
+	 * sAllocated.
+	 * @return how long the runs took, in nanoseconds
+	 */
+	private static long batch(Case c, int ops) {
+		int chunk = c.getOpsPerSetup();
+		if(chunk <= 0) chunk = ops;
+
+		long total = 0;
+		for(int done = 0; done < ops; done += chunk) {
+			c.setup();
+			int n = Math.min(chunk, ops - done);
+			long before = allocatedBytes();
+			long start = System.nanoTime();
+			sSink += c.run(n);
+			total += System.nanoTime() - start;
+
+			if(before < 0) sAllocated = -1;
+			else if(sAllocated >= 0) sAllocated += Math.max(0, allocatedBytes() - before - sAllocationOverhead);
+		}
+		return total;
+	}
+
+	/**
+	 * Find what a pair of allocatedBytes calls with nothing between them
+	 * allocates. The smallest of a few tries is taken, once the calls
+	 * have warmed up.
+	 */
+	static long allocationOverhead() {
+		long overhead = Long.MAX_VALUE;
+		for(int i = 0; i < 100; i++) {
+			long before = allocatedBytes();
+			long after = allocatedBytes();
+			if(before < 0) return 0;
+			overhead = Math.min(overhead, after - before);
+		}
+		return overhead;
+	}
+
+	/**
+	 * How many bytes this thread has allocated so far, or -1 if the JVM
+	 * can't say
+	 */
+	static long allocatedBytes() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if(bean instanceof com.sun.management.ThreadMXBean) {
+				return ((com.sun.management.ThreadMXBean) bean)
+						.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		catch(UnsupportedOperationException e) {
+		}
+		catch(NoClassDefFoundError e) {
+		}
+		return -1;
+	}
+
+	private static int[] parseInts(String list) {
+		String[] parts = list.split(",");
+		int[] values = new int[parts.length];
+		for(int i = 0; i < parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		return values;
+	}
+
+	private static Profile[] parseProfiles(String list) {
+		List<Profile> profiles = new ArrayList<Profile>();
+		for(String name : list.split(",")) {
+			profiles.add(Profile.named(name.trim()));
+		}
+		return profiles.toArray(new Profile[profiles.size()]);
+	}
+}
@@ -0,0 +1,132 @@
+package org.oep.grenade.bench;
+
+import java.util.Random;
+
+import org.oep.grenade.world.Contact;
+import org.oep.grenade.world.ParticlePool;
+import org.oep.grenade.world.RigidBody;
+import org.oep.grenade.world.Terrain;
+import org.oep.grenade.world.Vector2D;
+import org.oep.grenade.world.World;
+
+/**
+ * Benchmarks for moving things around the terrain, with the number of bodies
+ * in play as a parameter. One operation is one body stepped once.
+ */
+public class PhysicsCases {
+	private static final long SEED = 42;
+
+	/** How many steps a crowd is left to run before it is thrown again */
+	private static final int STEPS = 30;
+
+	public static Case[] all(final int width, final Profile profile, final int bodies) {
+		return new Case[] {
+			new Case("body.bounce") {
+				private Terrain mTerrain = profile.terrain(width, SEED);
+				private RigidBody[] mBodies = new RigidBody[bodies];
+				private Contact mContact = new Contact();
+				private Vector2D mWarp = new Vector2D(0, 0);
+				private Random mRandom = new Random(SEED);
+
+				@Override
+				public void setup() {
+					for(int i = 0; i < bodies; i++) {
+						RigidBody body = mBodies[i] = new RigidBody();
+						body.setGravity(World.GRAVITY);
+						body.setElasticity(0.3f);
+						body.setFriction(0.2f);
+						body.setPhysics(true);
+
+						int x = mRandom.nextInt(width);
+						body.placeAt(x, mTerrain.absAt(x) - 1);
+						body.setVelocity(mRandom.nextFloat() * 200 - 100, -mRandom.nextFloat() * 200);
+					}
+				}
+
+				@Override
+				public int getOpsPerSetup() {
+					return bodies * STEPS;
+				}
+
+				@Override
+				public long run(int ops) {
+					long sink = 0;
+					for(int i = 0; i < ops; i++) {
+						RigidBody body = mBodies[i % bodies];
+						body.savePosition();
+						if(World.moveBody(mTerrain, body, mContact, mWarp)) sink++;
+					}
+					return sink;
+				}
+			},
+
+			new Case("terrain.sweep") {
+				private Terrain mTerrain = profile.terrain(width, SEED);
+				private float[] mSegments = new float[bodies * 4];
+				private Contact mContact = new Contact();
+
+				@Override
+				public void setup() {
+					// Segments about one step long for something falling
+					// fast, starting anywhere above the ground
+					Random random = new Random(SEED);
+					for(int i = 0; i < bodies; i++) {
+						int x = random.nextInt(width);
+						float y = mTerrain.absAt(x) - random.nextInt(Profile.BASE / 4 + 1);
+						mSegments[i * 4] = x;
+						mSegments[i * 4 + 1] = y;
+						mSegments[i * 4 + 2] = x + random.nextFloat() * 20 - 10;
+						mSegments[i * 4 + 3] = y + random.nextFloat() * 20;
+					}
+				}
+
+				@Override
+				public long run(int ops) {
+					long sink = 0;
+					for(int i = 0; i < ops; i++) {
+						int k = (i % bodies) * 4;
+						if(mTerrain.sweep(mSegments[k], mSegments[k + 1], mSegments[k + 2], mSegments[k + 3], mContact))
+							sink += mContact.column;
+					}
+					return sink;
+				}
+			},
+
+			new Case("giblets.step") {
+				private Terrain mTerrain = profile.terrain(width, SEED);
+				private ParticlePool mPool = new ParticlePool(bodies);
+				private Contact mContact = new Contact();
+				private Vector2D mWarp = new Vector2D(0, 0);
+				private Random mRandom = new Random(SEED);
+
+				@Override
+				public void setup() {
+					mPool.clear();
+					for(int i = 0; i < bodies; i++) {
+						int x = mRandom.nextInt(width);
+						mPool.spawn(x, mTerrain.absAt(x) - 1,
+								mRandom.nextFloat() * 200 - 100, -mRandom.nextFloat() * 200,
+								0.3f, 0.2f, i % World.GIBLET_KINDS, World.GIBLET_LIFE);
+					}
+				}
+
+				@Override
+				public int getOpsPerSetup() {
+					return bodies * STEPS;
+				}
+
+				@Override
+				public long run(int ops) {
+					// The pool steps every giblet at once, so round to whole
+					// steps
+					long sink = 0;
+					for(int i = 0; i < ops; i += bodies) {
+						mPool.step(mTerrain, World.STEP, World.GRAVITY, mContact, mWarp);
+						sink += mPool.activeSize();
+					}
+					return sink;
+				}
+			},
+		};
+	}
+}
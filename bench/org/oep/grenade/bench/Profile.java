@@ -0,0 +1,62 @@
+package org.oep.grenade.bench;
+
+import java.util.Random;
+
+import org.oep.grenade.world.CaveTerrain;
+import org.oep.grenade.world.Terrain;
+
+/**
+ * How hilly a benchmark terrain is. The slope walk turns around whenever it
+ * leaves the band between the minimum and maximum height, so a narrow band
+ * gives gentle, flat ground and a wide one gives tall, steep hills.
+ */
+public class Profile {
+	/** The height of the view the terrain is laid out in */
+	public static final int BASE = 320;
+
+	public static final Profile FLAT = new Profile("flat", 0.45f, 0.55f);
+	public static final Profile ROLLING = new Profile("rolling", 0.25f, 0.75f);
+	public static final Profile STEEP = new Profile("steep", 0.05f, 0.95f);
+
+	public static final Profile[] ALL = { FLAT, ROLLING, STEEP };
+
+	private final String mName;
+	private final int mMinHeight, mMaxHeight;
+
+	private Profile(String name, float min, float max) {
+		mName = name;
+		mMinHeight = (int) (min * BASE);
+		mMaxHeight = (int) (max * BASE);
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	public int getMinHeight() {
+		return mMinHeight;
+	}
+
+	public int getMaxHeight() {
+		return mMaxHeight;
+	}
+
+	/**
+	 * Make a terrain of this profile. The same seed always gives the same
+	 * ground, so runs can be compared.
+	 */
+	public Terrain terrain(int width, long seed) {
+		return new Terrain(width, mMaxHeight, mMinHeight, BASE, new Random(seed));
+	}
+
+	public Terrain caveTerrain(int width, long seed) {
+		return new CaveTerrain(width, mMaxHeight, mMinHeight, BASE, new Random(seed));
+	}
+
+	public static Profile named(String name) {
+		for(Profile p : ALL) {
+			if(p.mName.equals(name)) return p;
+		}
+		throw new IllegalArgumentException("No profile called " + name);
+	}
+}
@@ -0,0 +1,130 @@
+package org.oep.grenade.bench;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.oep.grenade.sound.SoftwareMixer;
+import org.oep.grenade.sound.SoundEffects;
+import org.oep.grenade.world.MatchLog;
+import org.oep.grenade.world.Replay;
+import org.oep.grenade.world.World;
+
+/**
+ * Plays saved matches back and checks that each ends the way it did when
+ * it was played, so a pile of them makes a regression suite. The time each
+ * takes is reported too, so they double as real workloads to profile.
+ * Matches come off a device with
+ *
+ *   adb pull /data/data/org.oep.grenade/files/last-match.log
+ *
+ * and are played with
+ *
+ *   java -cp out org.oep.grenade.bench.Replays [repeat=10] [sound] match.log...
+ *
+ * With sound, the effects are played through a SoftwareMixer and a step's
+ * worth of audio is mixed after every step, as the game would, so the
+ * time includes the sound. It exits with 1 if any match went differently.
+ */
+public class Replays {
+	/** The rate the mixer's output is played at */
+	public static final int SAMPLE_RATE = 22050;
+
+	/** As many voices as the game has */
+	public static final int SOUND_VOICES = 8;
+
+	public static void main(String[] args) throws IOException {
+		int repeat = 1;
+		boolean sound = false;
+		boolean failed = false;
+
+		System.out.println(String.format("%-30s %8s %10s %12s %s",
+				"match", "steps", "ms", "steps/s", "result"));
+
+		for(String arg : args) {
+			if(arg.startsWith("repeat=")) {
+				repeat = Math.max(1, Integer.parseInt(arg.substring(7)));
+				continue;
+			}
+			if(arg.equals("sound")) {
+				sound = true;
+				continue;
+			}
+
+			MatchLog log = load(arg);
+			boolean matches = true;
+			int steps = 0;
+
+			long start = System.nanoTime();
+			for(int i = 0; i < repeat; i++) {
+				Replay replay = new Replay(log);
+				steps = sound ? runWithSound(replay) : replay.run();
+				matches &= replay.matches();
+			}
+			double ms = (System.nanoTime() - start) / 1e6 / repeat;
+
+			String result = !log.isFinished() ? "unfinished" : matches ? "ok" : "DIFFERENT";
+			failed |= log.isFinished() && !matches;
+
+			System.out.println(String.format("%-30s %8d %10.1f %12.0f %s",
+					arg, steps, ms, steps * 1000 / ms, result));
+		}
+
+		if(failed) System.exit(1);
+	}
+
+	/**
+	 * Play the whole match, mixing the sound effects as it goes
+	 * @return how many steps it took
+	 */
+	private static int runWithSound(Replay replay) {
+		World world = replay.getWorld();
+		SoftwareMixer mixer = newMixer();
+		SoundEffects effects = newEffects(mixer);
+		effects.setWidth(world.getTerrain().getWidth());
+		world.setListener(effects);
+
+		int frames = SAMPLE_RATE / World.FRAMES_PER_SECOND;
+		short[] out = new short[2 * frames];
+		while(replay.step()) {
+			mixer.mix(out, frames);
+		}
+
+		mixer.release();
+		return world.getStepCount();
+	}
+
+	static SoftwareMixer newMixer() {
+		return new SoftwareMixer(SOUND_VOICES);
+	}
+
+	/**
+	 * Load stand-ins for the game's sounds into the mixer: a second of
+	 * fading noise for an explosion and a quarter of one for a splat
+	 */
+	static SoundEffects newEffects(SoftwareMixer mixer) {
+		return new SoundEffects(mixer, mixer.load(burst(SAMPLE_RATE, 1)),
+				mixer.load(burst(SAMPLE_RATE / 4, 2)));
+	}
+
+	private static short[] burst(int length, long seed) {
+		Random random = new Random(seed);
+		short[] samples = new short[length];
+		for(int i = 0; i < length; i++) {
+			samples[i] = (short) ((random.nextInt(2 * Short.MAX_VALUE) - Short.MAX_VALUE) * (length - i) / length);
+		}
+		return samples;
+	}
+
+	private static MatchLog load(String path) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(path));
+		try {
+			return MatchLog.read(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+}
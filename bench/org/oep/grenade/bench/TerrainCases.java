@@ -0,0 +1,158 @@
+package org.oep.grenade.bench;
+
+import java.util.Random;
+
+import org.oep.grenade.world.Terrain;
+import org.oep.grenade.world.Vector2D;
+import org.oep.grenade.world.World;
+
+/**
+ * Benchmarks for the terrain queries and edits the game leans on
+ */
+public class TerrainCases {
+	/** How many precomputed inputs each case cycles through */
+	private static final int INPUTS = 1024;
+
+	private static final long SEED = 42;
+
+	public static Case[] all(final int width, final Profile profile) {
+		return new Case[] {
+			new Case("terrain.generate") {
+				private long mSeed;
+
+				@Override
+				public long run(int ops) {
+					long sink = 0;
+					for(int i = 0; i < ops; i++) {
+						sink += profile.terrain(width, mSeed++).getMinimum();
+					}
+					return sink;
+				}
+			},
+
+			new Case("terrain.intersections") {
+				private Terrain mTerrain = profile.terrain(width, SEED);
+				private int[] mOut = new int[64];
+				private int[] mHeights = new int[INPUTS];
+
+				@Override
+				public void setup() {
+					Random random = new Random(SEED);
+					for(int i = 0; i < INPUTS; i++) {
+						mHeights[i] = random.nextInt(profile.getMaxHeight() + 1);
+					}
+				}
+
+				@Override
+				public long run(int ops) {
+					long sink = 0;
+					for(int i = 0; i < ops; i++) {
+						sink += mTerrain.getIntersections(mHeights[i & (INPUTS - 1)], mOut);
+					}
+					return sink;
+				}
+			},
+
+			new Case("terrain.isIllegal") {
+				private Terrain mTerrain = profile.terrain(width, SEED);
+				private int[] mX = new int[INPUTS], mY = new int[INPUTS];
+
+				@Override
+				public void setup() {
+					Random random = new Random(SEED);
+					for(int i = 0; i < INPUTS; i++) {
+						mX[i] = random.nextInt(width);
+						mY[i] = random.nextInt(Profile.BASE);
+					}
+				}
+
+				@Override
+				public long run(int ops) {
+					long sink = 0;
+					for(int i = 0; i < ops; i++) {
+						int k = i & (INPUTS - 1);
+						if(mTerrain.isIllegal(mX[k], mY[k])) sink++;
+					}
+					return sink;
+				}
+			},
+
+			new Case("terrain.warpPoint") {
+				private Terrain mTerrain = profile.terrain(width, SEED);
+				private float[] mX = new float[INPUTS], mY = new float[INPUTS];
+				private Vector2D mOut = new Vector2D(0, 0);
+
+				@Override
+				public void setup() {
+					// Points buried somewhere in the ground, in graphics
+					// orientation, as moveBody would pass them
+					Random random = new Random(SEED);
+					for(int i = 0; i < INPUTS; i++) {
+						int x = random.nextInt(width);
+						mX[i] = x;
+						mY[i] = Profile.BASE - random.nextInt(Math.max(1, mTerrain.at(x)));
+					}
+				}
+
+				@Override
+				public long run(int ops) {
+					long sink = 0;
+					for(int i = 0; i < ops; i++) {
+						int k = i & (INPUTS - 1);
+						mTerrain.getWarpPoint(mX[k], mY[k], mOut);
+						sink += (long) mOut.y;
+					}
+					return sink;
+				}
+			},
+
+			new CarveCase("terrain.carve", width, profile, false),
+			new CarveCase("cave.carve", width, profile, true),
+		};
+	}
+
+	/**
+	 * Blow grenade-sized craters into the surface, as doGrenadeLogic does.
+	 * A few dozen craters flatten the ground, so the terrain is rebuilt,
+	 * untimed, every so often.
+	 */
+	private static class CarveCase extends Case {
+		private static final int CRATERS = 16;
+
+		private final int mWidth;
+		private final Profile mProfile;
+		private final boolean mCaves;
+
+		private Terrain mTerrain;
+		private Random mRandom = new Random(SEED);
+		private int[] mExtent = new int[4];
+
+		CarveCase(String name, int width, Profile profile, boolean caves) {
+			super(name);
+			mWidth = width;
+			mProfile = profile;
+			mCaves = caves;
+		}
+
+		@Override
+		public void setup() {
+			mTerrain = mCaves ? mProfile.caveTerrain(mWidth, SEED) : mProfile.terrain(mWidth, SEED);
+		}
+
+		@Override
+		public int getOpsPerSetup() {
+			return CRATERS;
+		}
+
+		@Override
+		public long run(int ops) {
+			long sink = 0;
+			for(int i = 0; i < ops; i++) {
+				int x = mRandom.nextInt(mWidth);
+				if(mTerrain.carveCircle(x, mTerrain.absAt(x), World.BLAST_RADIUS, mExtent))
+					sink += mExtent[2] - mExtent[0];
+			}
+			return sink;
+		}
+	}
+}
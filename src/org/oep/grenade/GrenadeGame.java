@@ -23,18 +23,34 @@ public class GrenadeGame extends Activity {
         setContentView(R.layout.main);
         
         mGrenadeView = (GrenadeView) findViewById(R.id.game_view);
-        mGrenadeView.update();
         
 		mSensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
 		mDefaultAccelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-		mSensorManager.registerListener(mGrenadeView, mDefaultAccelerometer, SensorManager.SENSOR_DELAY_GAME);
 		
 		this.setVolumeControlStream(AudioManager.STREAM_MUSIC);
     }
     
+    @Override
+    public void onPause() {
+    	super.onPause();
+    	mGrenadeView.pause();
+    	// Nobody is throwing while we're in the background, so don't keep
+    	// the accelerometer running flat out and draining the battery
+    	mSensorManager.unregisterListener(mGrenadeView);
+    }
+    
+    @Override
+    public void onResume() {
+    	super.onResume();
+    	mGrenadeView.resume();
+    	// As fast as it will go, so the throw meter catches the peak of the
+    	// swing. The samples skip the input queue, so this costs the game
+    	// loop next to nothing.
+    	mSensorManager.registerListener(mGrenadeView, mDefaultAccelerometer, SensorManager.SENSOR_DELAY_FASTEST);
+    }
+    
     public void onDestroy() {
     	super.onDestroy();
-//    	mGrenadeView.die();
-    	mSensorManager.unregisterListener(mGrenadeView);
+    	mGrenadeView.die();
     }
 }
\ No newline at end of file
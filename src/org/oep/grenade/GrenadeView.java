@@ -1,105 +1,166 @@
 package org.oep.grenade;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.Random;
+
+import org.oep.grenade.sound.SoundEffects;
+import org.oep.grenade.sound.SoundEngine;
+import org.oep.grenade.world.Cloud;
+import org.oep.grenade.world.Histogram;
+import org.oep.grenade.world.MatchLog;
+import org.oep.grenade.world.Opponent;
+import org.oep.grenade.world.ParticlePool;
+import org.oep.grenade.world.Player;
+import org.oep.grenade.world.Profiler;
+import org.oep.grenade.world.RigidBody;
+import org.oep.grenade.world.Trajectory;
+import org.oep.grenade.world.Vector2D;
+import org.oep.grenade.world.World;
+
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Point;
-import android.graphics.PointF;
 import android.graphics.Rect;
-import android.graphics.drawable.Drawable;
+import android.graphics.RectF;
+import android.graphics.Paint.Style;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.media.MediaPlayer;
-import android.media.MediaPlayer.OnCompletionListener;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.os.Vibrator;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.MotionEvent;
+import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 import android.view.View.OnTouchListener;
 import android.widget.TextView;
 
+/**
+ * Shows a World and plays it. Input, sound and drawing live here; the game
+ * rules are all in the world package.
+ */
 public class GrenadeView extends SurfaceView implements OnTouchListener,
-		SensorEventListener, OnCompletionListener {
+		SensorEventListener, SurfaceHolder.Callback {
 
 	public static final int MAX_SLOPE = 5;
-	public static final Random RNG = new Random();
+
+	/** A factor we apply to accelerometer values to calculate the throw speed */
+	public static final int THROW_FACTOR = 1000;
+
+	/** A choice of giblets, one for each of World.GIBLET_KINDS */
+	public static final int[] GIBLETS = new int[] { R.drawable.giblet_heart,
+			R.drawable.giblet_cake, R.drawable.giblet_candy };
 
 	/**
-	 * The minimum distance a grenade must achieve before it will do some damage
+	 * The most simulation steps we will run in one update to catch up after
+	 * a late frame. Anything beyond that is dropped.
 	 */
-	public static final int BLAST_RADIUS = 55;
+	public static final int MAX_CATCH_UP = 5;
 
-	/** The maximum velocity a grenade will launch an enemy */
-	public static final float BLAST_POWER = 865f;
+	/**
+	 * How long the computer gets to think about its throw, in milliseconds.
+	 * The game keeps running while it does.
+	 */
+	public static final long OPPONENT_BUDGET = 500;
 
-	/** The imprecision applied to BLAST_POWER */
-	public static final int BLAST_SPREAD = 90;
+	/** The most sound effects that can play at once */
+	public static final int SOUND_VOICES = 8;
 
-	/** The distance at which a grenade will 'kill' an enemy */
-	public static final int KILL_RADIUS = 5;
+	/**
+	 * Use terrain that blasts can punch holes in, rather than the streamed
+	 * heightfield. It is off unless you want to try caves out.
+	 */
+	public static final boolean CAVES = false;
 
-	/** The maximum damage a grenade can deal */
-	public static final int GRENADE_MAX_DMG = Player.MAX_HEALTH / 2;
-	
-	/** The maximum fall damage you can take */
-	public static final int MAX_FALL_DMG = Player.MAX_HEALTH / 4;
-	
-	/** Fall damage threshold speed */
-	public static final int FALL_THRESHOLD = 25;
-	
-	/** Max fall damage achieved at this velocity */
-	public static final int FALL_MAX = 50;
+	/**
+	 * Log every match and save it to MATCH_FILE when it ends, so it can be
+	 * pulled off the device and replayed
+	 */
+	public static final boolean RECORD_MATCHES = true;
 
-	/** The grenade will blow up after this many frames */
-	public static final int GRENADE_FUSE = 150;
+	/** Where the last match is saved, in the application's files */
+	public static final String MATCH_FILE = "last-match.log";
 
-	/** A factor we apply to accelerometer values to calculate the throw speed */
-	public static final int THROW_FACTOR = 1000;
+	/**
+	 * Count the allocations each frame makes on the game thread, and log
+	 * any frame that makes some. Drawing and stepping the game are meant
+	 * to allocate nothing once they are going.
+	 */
+	public static final boolean DEBUG_ALLOCATIONS = false;
 
-	/** A choice of giblets */
-	public static final int[] GIBLETS = new int[] { R.drawable.giblet_heart,
-			R.drawable.giblet_cake, R.drawable.giblet_candy };
+	/**
+	 * Time each part of every frame, show the frame time percentiles over
+	 * the game, and save the lot to PROFILE_FILE when the game is stopped
+	 */
+	public static final boolean PROFILE = false;
+
+	/** Where the profile is saved, in the application's files */
+	public static final String PROFILE_FILE = "profile.txt";
 
-	/** Frames per second, of course */
-	public static final int FRAMES_PER_SECOND = 30;
+	private static final String TAG = "GrenadeView";
 
-	public static final int TURN_RED = 0;
-	public static final int TURN_BLUE = 1;
+	/** The game being played */
+	private World mWorld;
+
+	/** The log of the game being played, if it is being recorded */
+	private MatchLog mLog;
 
 	/**
-	 * This is a linear array of integers specifying the height at each x
-	 * position.
+	 * Picks the seed for each game and for the opponent's searches. These
+	 * don't need to be repeatable, since the seed and every throw the
+	 * opponent makes are in the log.
 	 */
-	private Terrain mTerrain;
+	private Random mRandom = new Random();
+
+	private TerrainRenderer mTerrainRenderer = new TerrainRenderer();
 
-	private int mCurrentTurn;
+	/** Plays red */
+	private Opponent mOpponent = new Opponent(THROW_FACTOR);
 
-	/** These are the objects that keep up with our players */
-	private Player mRedPlayer = new Player();
-	private Player mBluePlayer = new Player();
+	/** Where the opponent puts the throw it has chosen */
+	private Vector2D mOpponentThrow = new Vector2D(0, 0);
 
-	/** These are all the drawables we will need */
-	private Drawable mGrenadeDrawable;
-	private Drawable mRedPlayerDrawable;
-	private Drawable mRedArrow;
-	private Drawable mBluePlayerDrawable;
-	private Drawable mBlueArrow;
-	private Drawable mCloudDrawable;
-	private Drawable mGrenadeButton;
-	private Drawable mGreenArrow;
-	private Drawable mCrosshair;
+	/** Where the grenade would go, shown while aiming */
+	private Trajectory mPreview = new Trajectory();
+	private Paint mPreviewPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 
-	/** Sounds that we wish to use */
-	private MediaPlayer mExplosionSound;
-	private MediaPlayer mSplatSound;
+	/** The direction blue is aiming in, as a unit vector */
+	private Vector2D mAim = new Vector2D(0, 0);
+
+	/** Every image we draw, and the sprite ids of them in it */
+	private SpriteAtlas mSprites = new SpriteAtlas();
+	private int mGrenadeSprite;
+	private int mRedPlayerSprite;
+	private int mRedArrowSprite;
+	private int mBluePlayerSprite;
+	private int mBlueArrowSprite;
+	private int mCloudSprite;
+	private int mGrenadeButtonSprite;
+	private int mGreenArrowSprite;
+	private int mCrosshairSprite;
+	private int[] mGibletSprites = new int[GIBLETS.length];
+
+	/** Where the crosshair and the grenade button are on the screen */
+	private Rect mCrosshair = new Rect();
+	private Rect mGrenadeButton = new Rect();
+
+	/** For drawing sprites faded out */
+	private Paint mSpritePaint = new Paint();
+
+	/** Plays the sound effects */
+	private SoundEngine mSound;
+
+	/** Hears what happens in the world and picks the sounds for it */
+	private SoundEffects mEffects;
 
 	private TextView mMessenger;
 
@@ -107,16 +168,37 @@ public class GrenadeView extends SurfaceView implements OnTouchListener,
 
 	private Paint mPaint = new Paint();
 
-	private long mDelay = 1000 / FRAMES_PER_SECOND;
-	private float mGravity = 9.8f;
+	/** Kept around so drawing the health arcs doesn't allocate */
+	private Paint mArcPaint = new Paint();
+	private RectF mOval = new RectF();
+
+	private long mDelay = World.STEP;
+
+	/** Times the frames, if PROFILE is on */
+	private Profiler mProfiler;
+	private int mInputPhase, mOpponentPhase, mLockPhase, mTerrainPhase,
+			mBodyPhase, mCloudPhase, mHudPhase, mPostPhase;
+
+	/** The profiler's overlay is formatted into here, a line at a time */
+	private char[] mDebugText = new char[64];
+	private int mDebugLength;
+	private Paint mDebugPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 
-	private long mDebugLogicTime;
+	/** The height of the surface the terrain was laid out for */
+	private int mTerrainBase;
 
-	private ArrayList<Cloud> mClouds = new ArrayList<Cloud>();
-	private ArrayList<RigidBody> mGiblets = new ArrayList<RigidBody>();
+	/** When update last ran, and how much time it has yet to simulate */
+	private long mLastUpdate;
+	private long mAccumulator;
 
-	/** The accelerometer updates these values */
-	private float mGX, mGY, mGZ, mDGX, mDGY, mDGZ;
+	/** How far between the last two steps the frame being drawn is */
+	private float mAlpha = 1;
+
+	/** Accelerometer samples on their way from the sensor thread */
+	private SampleRing mSamples = new SampleRing();
+
+	/** Works out the throw from the samples */
+	private ThrowMeter mThrowMeter = new ThrowMeter();
 
 	/** The vibrator service */
 	private Vibrator mVibrator;
@@ -127,36 +209,169 @@ public class GrenadeView extends SurfaceView implements OnTouchListener,
 	/** Has the player initiated the throwing procedure */
 	private boolean mPlayerThrowing = false;
 
+	/** Is the player about to throw a cluster grenade? */
+	private boolean mCluster = false;
+
 	/** The crosshair's position */
 	private float mCrosshairX, mCrosshairY;
 
 	/** The last timestamp when the player touched down */
 	private long mLastTouchDown;
 
-	/** Updates the state of the view (not the show) */
-	private RefreshHandler mRedrawHandler = new RefreshHandler();
+	/** Runs the game and draws it, off the UI thread */
+	private GameThread mThread;
+
+	/** Looks after the text views on the UI thread */
+	private UiHandler mUiHandler = new UiHandler();
+
+	/** Input waiting to be handled by the game thread */
+	private InputQueue mInput = new InputQueue();
+
+	/** The size of the surface, as last reported to the UI thread */
+	private volatile int mSurfaceWidth, mSurfaceHeight;
 
 	/** Should we keep updating? */
-	private boolean mContinue = true;
+	private volatile boolean mContinue = true;
+
+	/** Is the countdown showing? */
+	private boolean mCountdownVisible;
 
-	/** The grenade! */
-	private RigidBody mGrenade;
+	/** The countdown is formatted into here so drawing it doesn't allocate */
+	private char[] mCountdownText = new char[16];
+	private Paint mCountdownPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private float mCountdownMargin;
 
-	/** When was the grenade pin pulled? */
-	private int mGrenadeTimer;
-	private TextView mCountdown;
 	private int TRACKBALL_SENSITIVITY = 20;
 
-	class RefreshHandler extends Handler {
+	/** Messages for the UiHandler */
+	private static final int MSG_SHOW_MESSAGE = 0;
+	private static final int MSG_HIDE_MESSAGES = 1;
+
+	/**
+	 * The game thread can't touch the text views laid over the game, so it
+	 * sends their changes here to be made on the UI thread.
+	 */
+	class UiHandler extends Handler {
 		@Override
 		public void handleMessage(Message msg) {
-			GrenadeView.this.update();
-			GrenadeView.this.invalidate(); // Mark the view as 'dirty'
+			loadViews();
+
+			switch (msg.what) {
+			case MSG_SHOW_MESSAGE:
+				mMessenger.setVisibility(View.VISIBLE);
+				mMessenger.setText(msg.arg1);
+				break;
+
+			case MSG_HIDE_MESSAGES:
+				mMessenger.setVisibility(View.INVISIBLE);
+				break;
+			}
 		}
+	}
 
-		public void sleep(long delay) {
-			this.removeMessages(0);
-			this.sendMessageDelayed(obtainMessage(0), delay);
+	/**
+	 * Runs the simulation and draws every frame straight to the surface.
+	 * It lives from surfaceCreated to surfaceDestroyed, and can be paused
+	 * in between while the activity is in the background.
+	 */
+	class GameThread extends Thread {
+		private boolean mRunning = true;
+		private boolean mPaused = false;
+
+		@Override
+		public void run() {
+			SurfaceHolder holder = getHolder();
+
+			while (true) {
+				synchronized (this) {
+					if (mPaused) {
+						while (mPaused && mRunning) {
+							try {
+								wait();
+							} catch (InterruptedException e) {
+								// Check again
+							}
+						}
+
+						// Don't try to catch up on the time we were paused
+						mLastUpdate = 0;
+					}
+
+					if (!mRunning)
+						return;
+				}
+
+				long start = SystemClock.uptimeMillis();
+				if (DEBUG_ALLOCATIONS)
+					Debug.startAllocCounting();
+				if (mProfiler != null)
+					mProfiler.startFrame();
+
+				handleInput();
+				lap(mInputPhase);
+				update();
+
+				Canvas canvas = null;
+				try {
+					canvas = holder.lockCanvas();
+					lap(mLockPhase);
+					if (canvas != null)
+						doDraw(canvas);
+				} finally {
+					if (canvas != null)
+						holder.unlockCanvasAndPost(canvas);
+				}
+
+				if (mProfiler != null) {
+					mProfiler.lap(mPostPhase);
+					mProfiler.endFrame();
+				}
+
+				if (DEBUG_ALLOCATIONS) {
+					int allocations = Debug.getThreadAllocCount();
+					Debug.stopAllocCounting();
+					Debug.resetThreadAllocCount();
+
+					if (allocations > 0)
+						Log.w(TAG, allocations + " allocations in one frame");
+				}
+
+				long wait = mDelay - mAccumulator
+						- (SystemClock.uptimeMillis() - start);
+				if (wait > 0) {
+					try {
+						sleep(wait);
+					} catch (InterruptedException e) {
+						// Woken up to stop or pause
+					}
+				}
+			}
+		}
+
+		public synchronized void setPaused(boolean paused) {
+			mPaused = paused;
+			notifyAll();
+		}
+
+		/**
+		 * Stop the thread and wait for it to finish its last frame
+		 */
+		public void halt() {
+			synchronized (this) {
+				mRunning = false;
+				notifyAll();
+			}
+			interrupt();
+
+			boolean joined = false;
+			while (!joined) {
+				try {
+					join();
+					joined = true;
+				} catch (InterruptedException e) {
+					// Keep waiting
+				}
+			}
 		}
 	}
 
@@ -168,8 +383,8 @@ public class GrenadeView extends SurfaceView implements OnTouchListener,
 	 */
 	public GrenadeView(Context context, AttributeSet attrs) {
 		super(context, attrs);
-		this.setBackgroundColor(Color.WHITE);
 		this.setOnTouchListener(this);
+		getHolder().addCallback(this);
 		initGrenadeView();
 	}
 
@@ -177,341 +392,270 @@ public class GrenadeView extends SurfaceView implements OnTouchListener,
 		GrenadeGame c = (GrenadeGame) getContext();
 		Resources r = c.getResources();
 
-		mRedPlayerDrawable = r.getDrawable(R.drawable.red_guy);
-		mBluePlayerDrawable = r.getDrawable(R.drawable.blue_guy);
-		mGrenadeDrawable = r.getDrawable(R.drawable.grenade);
-		mCloudDrawable = r.getDrawable(R.drawable.cloud);
-		mGrenadeButton = r.getDrawable(R.drawable.grenade_button);
-		mRedArrow = r.getDrawable(R.drawable.red_arrow);
-		mBlueArrow = r.getDrawable(R.drawable.blue_arrow);
-		mGreenArrow = r.getDrawable(R.drawable.green_arrow);
-		mCrosshair = r.getDrawable(R.drawable.crosshair);
-
-		mRedPlayer.setDrawable(mRedPlayerDrawable);
-		mBluePlayer.setDrawable(mBluePlayerDrawable);
-
-		mRedPlayer.setGravity(mGravity);
-		mBluePlayer.setGravity(mGravity);
-
-		mRedPlayer.setPhysics(false);
-		mBluePlayer.setPhysics(false);
+		SpriteAtlas sprites = mSprites;
+		mRedPlayerSprite = sprites.add(R.drawable.red_guy);
+		mBluePlayerSprite = sprites.add(R.drawable.blue_guy);
+		mGrenadeSprite = sprites.add(R.drawable.grenade);
+		mCloudSprite = sprites.add(R.drawable.cloud);
+		mGrenadeButtonSprite = sprites.add(R.drawable.grenade_button);
+		mRedArrowSprite = sprites.add(R.drawable.red_arrow);
+		mBlueArrowSprite = sprites.add(R.drawable.blue_arrow);
+		mGreenArrowSprite = sprites.add(R.drawable.green_arrow);
+		mCrosshairSprite = sprites.add(R.drawable.crosshair);
+
+		for (int i = 0; i < GIBLETS.length; i++) {
+			mGibletSprites[i] = sprites.add(GIBLETS[i]);
+		}
+		sprites.build(r);
 
-		mRedPlayer.setFriction(0.2f);
-		mRedPlayer.setElasticity(0.3f);
+		// Match the look of the message text
+		mCountdownPaint.setColor(0x88ff0000);
+		mCountdownPaint.setTextSize(24 * r.getDisplayMetrics().density);
+		mCountdownPaint.setTextAlign(Paint.Align.CENTER);
+		mCountdownMargin = 100 * r.getDisplayMetrics().density;
 
-		mBluePlayer.setFriction(0.2f);
-		mBluePlayer.setElasticity(0.3f);
+		mArcPaint.setStrokeWidth(4);
+		mArcPaint.setStyle(Style.STROKE);
 
-		// Randomly decide whose turn it is
-		mCurrentTurn = (RNG.nextInt(2) == 0) ? TURN_BLUE : TURN_RED;
+		mPreviewPaint.setColor(Color.WHITE);
+		mPreviewPaint.setStrokeWidth(4 * r.getDisplayMetrics().density);
+		mPreviewPaint.setStrokeCap(Paint.Cap.ROUND);
 
 		mVibrator = (Vibrator) getContext().getSystemService(
 				Context.VIBRATOR_SERVICE);
 
-		// Load sound(s)
-		mExplosionSound = loadSound(R.raw.explosion);
-		mSplatSound = loadSound(R.raw.splat);
-
-		setFocusable(true);
-	}
-
-	public void update() {
-		long now = System.currentTimeMillis();
-
-		if (mInitialized)
-			doGameLogic();
-
-		if (mContinue) {
-			long diff = mDebugLogicTime = System.currentTimeMillis() - now;
-			mRedrawHandler.sleep(Math.max(0, mDelay - diff));
+		if (PROFILE) {
+			mProfiler = new Profiler();
+			mInputPhase = mProfiler.addPhase("input");
+			mOpponentPhase = mProfiler.addPhase("opponent");
+			mLockPhase = mProfiler.addPhase("lock");
+			mTerrainPhase = mProfiler.addPhase("drawTerrain");
+			mBodyPhase = mProfiler.addPhase("drawBodies");
+			mCloudPhase = mProfiler.addPhase("drawClouds");
+			mHudPhase = mProfiler.addPhase("drawHud");
+			mPostPhase = mProfiler.addPhase("post");
 		}
-	}
 
-	private void doGameLogic() {
-		loadViews();
-		doGrenadeLogic();
-		doCloudLogic();
-		doPlayerLogic(mRedPlayer);
-		doPlayerLogic(mBluePlayer);
-		doGibletLogic();
+		mDebugPaint.setColor(Color.BLUE);
+		mDebugPaint.setTextSize(12 * r.getDisplayMetrics().density);
 
-		if (mCountdown != null && mCountdown.getVisibility() == View.VISIBLE) {
-			mCountdown.setText(getCountdownString());
-		}
-	}
-
-	private void doGibletLogic() {
-		for (RigidBody giblet : mGiblets) {
-			moveBody(giblet);
-		}
-	}
-
-	private void loadViews() {
-		GrenadeGame c = (GrenadeGame) getContext();
-		if (mMessenger == null)
-			mMessenger = (TextView) c.findViewById(R.id.gameMessage);
-		if (mCountdown == null)
-			mCountdown = (TextView) c.findViewById(R.id.grenadeCountdown);
-	}
+		// Load sound(s)
+		SoundPoolEngine sound = new SoundPoolEngine(SOUND_VOICES);
+		mEffects = new SoundEffects(sound, sound.load(c, R.raw.explosion),
+				sound.load(c, R.raw.splat));
+		mSound = sound;
 
-	private String getCountdownString() {
-		return Float.toString(Math.max(0, (mGrenadeTimer * mDelay / 1000f)));
+		setFocusable(true);
 	}
 
-	private void doPlayerLogic(Player player) {
-		if(player.isDead() == true) {
-			// The player is dead. There is nothing we can do for him.
-			// Just move on, buddy. It'll be all right...
-			
-			return;
-		}
-	
-		boolean bounced = moveBody(player);
-		int x = (int) player.getX();
-		int y = (int) player.getY();
-
-		float dx = Math.abs(player.getVX());
-		float dy = Math.abs(player.getVX());
-		
-		if(bounced) {
-			// Get a normal vector at this point
-			Vector2D unitNormal = mTerrain.getSlopeAt(x).getNormal().getUnitVector();
-			
-			// Dot it to see how much of the velocity was normal
-			float dmgVelocity = Math.abs( unitNormal.dot( player.getVelocity() ) );
-			
-			int dmg = (int) Math.max(0, Math.min(MAX_FALL_DMG, MAX_FALL_DMG * (dmgVelocity - FALL_THRESHOLD) / (FALL_MAX - FALL_THRESHOLD)));
-			player.takeDamage(dmg);
-			
-			if(player.getHealth() == 0) {
-				playSound(mSplatSound);
-				makeMovingGiblets(player);
-				player.setDead(true);
-			}
-		}
-
-		// If the player has stopped moving or its physics timer is up and it is
-		// sitting on the ground, stop!
-		if (player.getPhysics()
-				&& ((dx < 2 && dy < 2) || player.getPhysicsTimer() == 0)
-				&& y == getHeight() - mTerrain.at(x)) {
-			player.setPhysics(false);
-			player.setPosition(x, y);
-		}
-
-		if (!player.getPhysics()) {
-			player.setPosition(x, getHeight() - mTerrain.at(x));
-			player.nextFrame();
+	/**
+	 * Advance the simulation in fixed steps of mDelay to cover the time that
+	 * has passed since the last update. A late frame runs extra steps to
+	 * catch up, up to MAX_CATCH_UP; whatever is left over carries to the
+	 * next update and is used to interpolate the drawing.
+	 */
+	private void update() {
+		long now = SystemClock.uptimeMillis();
+
+		// Pick up a new surface size
+		int width = mSurfaceWidth, height = mSurfaceHeight;
+		if (width > 0 && (!mInitialized
+				|| width != mWorld.getTerrain().getWidth()
+				|| height != mTerrainBase)) {
+			setSize(width, height);
 		}
-	}
-
-	private void doGrenadeLogic() {
-		mGrenadeTimer = Math.max(0, mGrenadeTimer - 1);
 
-		if (mGrenade == null)
-			return;
-		moveBody(mGrenade);
-
-		int x = (int) mGrenade.getX();
-		int y = (int) mGrenade.getY();
-
-		// Blow it up if needed
-		if (mGrenadeTimer <= 0) {
-			int leftBound = Math.max(0, x - BLAST_RADIUS);
-			int rightBound = Math
-					.min(mTerrain.getWidth() - 1, x + BLAST_RADIUS);
-
-			// Play dat sound
-			playSound(mExplosionSound);
-
-			// A doozie of a for-loop. Loop through the x pixels of a circle
-			// formed by the blast radius
-			// bounded by the dimensions of mTerrain.
-			for (int i = leftBound; i < rightBound; i++) {
-				int dx = x - i;
-				int blastY = (int) Math.sqrt(BLAST_RADIUS * BLAST_RADIUS - dx
-						* dx);
-
-				int terrainHeight = getHeight() - mTerrain.at(i);
-
-				// Subtract off any terrain that may have been consumed in the
-				// blast
-				mTerrain.offset(i, -Math.max(0, y + blastY
-						- Math.max(terrainHeight, y - blastY)));
+		if (mInitialized) {
+			if (mLastUpdate == 0)
+				mLastUpdate = now - mDelay;
+			mAccumulator += now - mLastUpdate;
+			mLastUpdate = now;
+
+			int steps = 0;
+			while (mAccumulator >= mDelay && steps < MAX_CATCH_UP) {
+				mWorld.step();
+				mAccumulator -= mDelay;
+				steps++;
 			}
 
-			// Make the blast cloud
-			Cloud c = new Cloud(x, y);
-			mClouds.add(c);
+			if (mAccumulator >= mDelay)
+				mAccumulator %= mDelay;
 
-			// We could have hit a player...
-			blastPlayer(mRedPlayer);
-			blastPlayer(mBluePlayer);
-
-			// There is no grenade
-			mGrenade = null;
+			doOpponentLogic();
+			lap(mOpponentPhase);
 		}
 	}
 
-	private void doCloudLogic() {
-		for (Cloud c : mClouds) {
-			c.update();
-
-			if (c.getAlpha() == 0) {
-				mClouds.remove(c);
-			}
-		}
+	/**
+	 * Charge the time since the last lap to a phase, if profiling
+	 */
+	private void lap(int phase) {
+		if (mProfiler != null)
+			mProfiler.lap(phase);
 	}
 
-	private void blastPlayer(Player player) {
-		if (player.isDead() == true)
-			return;
-
-		double distance = player.distance(mGrenade);
-		if (distance > BLAST_RADIUS)
+	/**
+	 * On red's turn, get the opponent thinking once everything has settled,
+	 * and throw for it when it has made up its mind
+	 */
+	private void doOpponentLogic() {
+		Player red = mWorld.getRedPlayer(), blue = mWorld.getBluePlayer();
+		if (mWorld.getCurrentTurn() != World.TURN_RED || !mWorld.isSettled()
+				|| red.isDead() || blue.isDead())
 			return;
 
-		double scale = Math.max(0, Math.min((BLAST_RADIUS - distance)
-				/ (BLAST_RADIUS - KILL_RADIUS), 1));
-		int dmg = (int) (scale * GRENADE_MAX_DMG);
-		player.takeDamage(dmg);
-
-		// If the player is dead we don't need to blast him any more. But we
-		// will blast his giblets.
-		if (player.getHealth() == 0) {
-			makeExplodedGiblets(player);
-			player.setDead(true);
-			playSound(mSplatSound);
-		} else {
-			blastBody(player);
+		if (!mOpponent.isSearching()) {
+			mOpponent.start(mWorld.getTerrain(), red, blue, mRandom,
+					OPPONENT_BUDGET);
+		} else if (mOpponent.poll(mOpponentThrow)) {
+			mWorld.startFuse();
+			mWorld.throwGrenade(red.getX(), red.getY() - World.THROW_HEIGHT,
+					mOpponentThrow.x, mOpponentThrow.y);
 		}
 	}
 
-	private RigidBody[] makeGiblets(Rect bounds) {
-		RigidBody[] giblets = new RigidBody[Player.GIBLET_CHUNKS];
-
-		for (int i = 0; i < Player.GIBLET_CHUNKS; i++) {
-			RigidBody giblet = new RigidBody();
-			giblet.setGravity(mGravity);
-			giblet.setElasticity(0.3f);
-			giblet.setFriction(0.3f);
-			giblet.setDrawable(getGiblet());
-
-			giblet.setPosition(bounds.left + RNG.nextInt(bounds.width()),
-					bounds.top + RNG.nextInt(bounds.height()));
-			mGiblets.add(giblet);
-			giblets[i] = giblet;
-		}
-
-		return giblets;
-	}
-	
-	private RigidBody[] makeExplodedGiblets(RigidBody player) {
-		RigidBody[] giblets = makeGiblets(player.getBounds());
-		
-		for(int i = 0; i < giblets.length; i++) {
-			blastBody(giblets[i]);
-		}
-		
-		return giblets;
-	}
-	
-	private RigidBody[] makeMovingGiblets(RigidBody player) {
-		RigidBody[] giblets = makeGiblets(player.getBounds());
-		
-		for(int i = 0; i < giblets.length; i++) {
-			giblets[i].setVelocity(player.getVX(), player.getVY());
-		}
-		
-		return giblets;
+	private void loadViews() {
+		GrenadeGame c = (GrenadeGame) getContext();
+		if (mMessenger == null)
+			mMessenger = (TextView) c.findViewById(R.id.gameMessage);
 	}
 
-	private void blastBody(RigidBody body) {
-		double distance = body.distance(mGrenade);
-		if (distance > BLAST_RADIUS)
-			return;
-
-		double scale = Math.max(0, Math.min((BLAST_RADIUS - distance)
-				/ (BLAST_RADIUS - KILL_RADIUS), 1));
-		float power = (float) (scale * BLAST_POWER) + RNG.nextInt(BLAST_SPREAD);
-
-		// Get a vector in the direction the thingy will travel
-		float dx = body.getX() - mGrenade.getX();
-		float dy = body.getY() - mGrenade.getY();
+	/**
+	 * Write the time left on the grenade into mCountdownText in seconds,
+	 * to a tenth of a second
+	 * @return how many characters were written
+	 */
+	private int formatCountdown(int timer) {
+		char[] out = mCountdownText;
+		int tenths = (int) Math.max(0, timer * mDelay / 100);
+
+		// Write the digits backwards from the end, then move them up
+		int i = out.length;
+		out[--i] = (char) ('0' + tenths % 10);
+		out[--i] = '.';
+		int seconds = tenths / 10;
+		do {
+			out[--i] = (char) ('0' + seconds % 10);
+			seconds /= 10;
+		} while (seconds > 0);
+
+		int length = out.length - i;
+		System.arraycopy(out, i, out, 0, length);
+		return length;
+	}
 
-		// In case we get a zero vector, go straight up and in some other
-		// direction
-		if (dx == 0 && dy == 0) {
-			dy = -1;
-			dx = -50 + RNG.nextInt(100);
+	/**
+	 * Lay out a new game for a surface of the given size. This runs on the
+	 * game thread.
+	 */
+	private void setSize(int width, int height) {
+		finishMatch();
+
+		mTerrainBase = height;
+		MatchLog log = new MatchLog(mRandom.nextLong(), CAVES ? MatchLog.CAVES
+				: MatchLog.HILLS, width, 3 * height / 4, height / 4, height);
+
+		// Anything the opponent was thinking about was for the old game
+		mOpponent.cancel();
+		mPreview.invalidate();
+
+		mWorld = log.newWorld();
+		mWorld.setListener(mEffects);
+		mEffects.setWidth(width);
+		mWorld.setProfiler(mProfiler);
+		if (RECORD_MATCHES) {
+			mLog = log;
+			mWorld.setLog(log);
 		}
 
-		// Calculate magnitude of said vector
-		float magnitude = (float) Math.sqrt(dx * dx + dy * dy);
-
-		// And use it to get the unit vector
-		float ux = dx / magnitude, uy = dy / magnitude;
-
-		// And set it!
-		body.setVelocity(ux * power, uy * power);
-
-		// Enable physics and the world flies away with you!!!
-		body.setPhysics(true);
-		body.setPhysicsTimer(50);
-	}
+		setPlayerSize(World.TURN_RED, mRedPlayerSprite);
+		setPlayerSize(World.TURN_BLUE, mBluePlayerSprite);
+		mWorld.setGrenadeSize(mSprites.getWidth(mGrenadeSprite),
+				mSprites.getHeight(mGrenadeSprite));
 
-	public void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
-		super.onSizeChanged(width, height, oldWidth, oldHeight);
-		mTerrain = new Terrain(width, 3 * height / 4, height / 4, height);
-		positionPlayers(width);
-
-		int w = mGrenadeButton.getIntrinsicWidth();
-		int h = mGrenadeButton.getIntrinsicHeight();
-		mGrenadeButton.setBounds(width / 2 - w / 2, height / 2 - h / 2, width
-				/ 2 + w / 2, height / 2 + h / 2);
+		centerSprite(mGrenadeButton, mGrenadeButtonSprite, width / 2, height / 2);
 
 		mCrosshairX = width / 2;
 		mCrosshairY = height / 2;
+		centerSprite(mCrosshair, mCrosshairSprite, width / 2, height / 2);
 
 		mInitialized = true;
 	}
 
-	private void positionPlayers(int viewWidth) {
-		// This is invalid if the terrain isn't initialized.
-		if (mTerrain == null)
-			return;
+	private void setPlayerSize(int turn, int sprite) {
+		mWorld.setPlayerSize(turn, mSprites.getWidth(sprite),
+				mSprites.getHeight(sprite));
+	}
 
-		int rx = RNG.nextInt(mTerrain.getWidth());
-		int bx = RNG.nextInt(mTerrain.getWidth());
+	/**
+	 * End the log of the game being played and save it over the last one.
+	 * The game must not be running on another thread.
+	 */
+	private void finishMatch() {
+		if (mLog == null)
+			return;
 
-		int h = getHeight();
-		mRedPlayer.setPosition(rx, h - mTerrain.at(rx));
-		mBluePlayer.setPosition(bx, h - mTerrain.at(bx));
+		mLog.finish(mWorld);
+		mWorld.setLog(null);
+
+		OutputStream out = null;
+		try {
+			out = getContext().openFileOutput(MATCH_FILE, Context.MODE_PRIVATE);
+			mLog.write(out);
+		} catch (IOException e) {
+			Log.w(TAG, "Couldn't save the match", e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// Nothing more we can do
+				}
+			}
+		}
 
-		// TODO: Do something in case the players are too close
+		mLog = null;
 	}
 
-	public void onDraw(Canvas canvas) {
-		super.onDraw(canvas);
+	private void doDraw(Canvas canvas) {
+		canvas.drawColor(Color.WHITE);
 
 		if (mInitialized) {
+			// How far we are between the last step and the next one
+			mAlpha = Math.min(1f, (float) mAccumulator / mDelay);
+
 			mPaint.setColor(Color.BLACK);
 			drawTerrain(canvas);
+			lap(mTerrainPhase);
 			drawPlayers(canvas);
 			drawBodies(canvas);
+			lap(mBodyPhase);
 			drawClouds(canvas);
-			drawDebug(canvas);
+			lap(mCloudPhase);
 			drawCrosshair(canvas);
+			drawCountdown(canvas);
 
 			if (mThrowingMode) {
 				drawThrowingScreen(canvas);
 			}
 
+			drawDebug(canvas);
+			lap(mHudPhase);
 		}
 	}
 
 	private void drawCrosshair(Canvas canvas) {
-		mCrosshair.draw(canvas);
+		mSprites.draw(canvas, mCrosshairSprite, mCrosshair.left,
+				mCrosshair.top, null);
+	}
+
+	private void drawCountdown(Canvas canvas) {
+		if (!mCountdownVisible)
+			return;
+
+		int length = formatCountdown(mWorld.getGrenadeTimer());
+		canvas.drawText(mCountdownText, 0, length, getWidth() / 2,
+				getHeight() - mCountdownMargin, mCountdownPaint);
 	}
 
 	private void drawThrowingScreen(Canvas canvas) {
@@ -524,70 +668,250 @@ public class GrenadeView extends SurfaceView implements OnTouchListener,
 		mPaint.setColor(Color.RED);
 		canvas.drawRect(0, getHeight() - power, 10, getHeight(), mPaint);
 
+		canvas.drawPoints(mPreview.getDots(), 0, 2 * mPreview.getDotCount(),
+				mPreviewPaint);
+
 		mPaint.setColor(Color.WHITE);
-		mGrenadeButton.draw(canvas);
+		mSprites.draw(canvas, mGrenadeButtonSprite, mGrenadeButton.left,
+				mGrenadeButton.top, null);
 	}
 
 	private void drawClouds(Canvas canvas) {
-		for (Cloud c : mClouds) {
-			c.draw(canvas, mCloudDrawable);
+		int w = mSprites.getWidth(mCloudSprite);
+		int h = mSprites.getHeight(mCloudSprite);
+
+		for (int i = 0; i < mWorld.getCloudCount(); i++) {
+			Cloud c = mWorld.getCloud(i);
+
+			mSpritePaint.setAlpha(c.getAlpha());
+			mSprites.draw(canvas, mCloudSprite, c.getX() - w / 2, c.getY() - h
+					/ 2, mSpritePaint);
 		}
 	}
 
+	/**
+	 * Show the frame time percentiles and how much is moving, if profiling
+	 */
 	private void drawDebug(Canvas canvas) {
+		if (mProfiler == null)
+			return;
+
+		Histogram frames = mProfiler.getFrames();
+		float line = mDebugPaint.getTextSize() * 1.25f;
+
+		mDebugLength = 0;
+		debugText("frame ms  p50 ");
+		debugMillis(frames.getPercentile(0.5f));
+		debugText("  p95 ");
+		debugMillis(frames.getPercentile(0.95f));
+		debugText("  p99 ");
+		debugMillis(frames.getPercentile(0.99f));
+		canvas.drawText(mDebugText, 0, mDebugLength, 4, line, mDebugPaint);
+
+		mDebugLength = 0;
+		debugText("bodies ");
+		debugNumber(mWorld.getActiveBodyCount());
+		canvas.drawText(mDebugText, 0, mDebugLength, 4, 2 * line, mDebugPaint);
+	}
+
+	private void debugText(String s) {
+		s.getChars(0, s.length(), mDebugText, mDebugLength);
+		mDebugLength += s.length();
+	}
 
+	private void debugNumber(long n) {
+		int digits = 1;
+		for (long m = n / 10; m > 0; m /= 10)
+			digits++;
+
+		for (int i = mDebugLength + digits - 1; i >= mDebugLength; i--) {
+			mDebugText[i] = (char) ('0' + n % 10);
+			n /= 10;
+		}
+		mDebugLength += digits;
+	}
+
+	/**
+	 * Write a time in microseconds as milliseconds to a tenth
+	 */
+	private void debugMillis(long micros) {
+		long tenths = (micros + 50) / 100;
+		debugNumber(tenths / 10);
+		mDebugText[mDebugLength++] = '.';
+		mDebugText[mDebugLength++] = (char) ('0' + tenths % 10);
 	}
 
 	private void drawBodies(Canvas canvas) {
-		drawBody(mGrenade, mGreenArrow, canvas);
+		for (int i = 0; i < mWorld.getGrenadeCount(); i++) {
+			drawBody(mWorld.getGrenade(i), mGrenadeSprite, mGreenArrowSprite,
+					canvas);
+		}
+		drawGiblets(canvas);
+	}
 
-		for (RigidBody g : mGiblets) {
-			drawBody(g, null, canvas);
+	/**
+	 * Draw every live giblet part of the way from where it was before the
+	 * last step to where it is now
+	 */
+	private void drawGiblets(Canvas canvas) {
+		ParticlePool giblets = mWorld.getGiblets();
+
+		for (int n = 0; n < giblets.size(); n++) {
+			int i = giblets.slot(n);
+			if (!giblets.isAlive(i))
+				continue;
+
+			float y = giblets.getDrawY(i, mAlpha);
+			if (y >= 0) {
+				drawAt(mGibletSprites[giblets.getSprite(i)],
+						giblets.getDrawX(i, mAlpha), y, canvas);
+			}
 		}
 	}
 
 	private void drawPlayers(Canvas canvas) {
-		// This requires the terrain be initialized
-		if (mTerrain == null)
+		drawPlayer(mWorld.getRedPlayer(), mRedPlayerSprite, mRedArrowSprite,
+				canvas);
+		drawPlayer(mWorld.getBluePlayer(), mBluePlayerSprite, mBlueArrowSprite,
+				canvas);
+	}
+
+	private void drawPlayer(Player player, int sprite, int arrow,
+			Canvas canvas) {
+		if (player.isDead())
 			return;
 
-		drawBody(mRedPlayer, mRedArrow, canvas);
-		drawBody(mBluePlayer, mBlueArrow, canvas);
+		drawBody(player, sprite, arrow, canvas);
+
+		if (player.getPhysics())
+			return;
+
+		// Draw the health arc around him while he is standing still
+		float x = player.getDrawX(mAlpha), y = player.getDrawY(mAlpha);
+		int health = player.getAnimationHealth();
+		int max = Player.MAX_HEALTH;
+
+		int r = (health == 0 || max / health < 2)
+			? 255 * ( (max / 2) - health ) / (max / 2)
+			: 255;
+
+		int g = (health == 0 || max / health >= 2) ? 255 * ( health ) / (max / 2) :
+			255;
+
+		float arcSweep = 360f * health / max;
+		mArcPaint.setColor(Color.argb(0xFF, r, g, 0));
+
+		int biggest = Math.max(player.getWidth(), player.getHeight());
+
+		int h = mSprites.getHeight(sprite);
+
+		RectF oval = mOval;
+		oval.set(x - biggest / 2, y - h / 2 - biggest / 2,
+				x + biggest / 2, y - h / 2 + biggest / 2);
+
+		canvas.drawArc(oval, 0f, arcSweep, false, mArcPaint);
 	}
 
-	private void drawBody(RigidBody body, Drawable arrow, Canvas canvas) {
+	/**
+	 * Draw a body, or an arrow at the top of the screen over where it is
+	 * if it has gone off the top
+	 */
+	private void drawBody(RigidBody body, int sprite, int arrow,
+			Canvas canvas) {
 		if (body == null)
 			return;
 
-		if (body.getY() >= 0)
-			body.draw(canvas);
-		else if (arrow != null) {
-			int w = arrow.getIntrinsicWidth();
-			int h = arrow.getIntrinsicHeight();
-			arrow.setBounds((int) body.getX() - w / 2, 0, (int) body.getX() + w
-					/ 2, h);
-			arrow.draw(canvas);
+		if (body.getDrawY(mAlpha) >= 0)
+			drawAt(sprite, body.getDrawX(mAlpha), body.getDrawY(mAlpha), canvas);
+		else {
+			int x = (int) body.getDrawX(mAlpha);
+			mSprites.draw(canvas, arrow, x - mSprites.getWidth(arrow) / 2, 0,
+					null);
 		}
 	}
 
-	private void drawTerrain(Canvas canvas) {
-		// Just skip the rest if the View has not initialized
-		if (mTerrain == null)
-			return;
+	/**
+	 * Draw a sprite standing on the point (x, y)
+	 */
+	private void drawAt(int sprite, float x, float y, Canvas canvas) {
+		int w = mSprites.getWidth(sprite), h = mSprites.getHeight(sprite);
+		mSprites.draw(canvas, sprite, (int) (x - w / 2), (int) (y - h), null);
+	}
 
+	private void drawTerrain(Canvas canvas) {
 		mPaint.setColor(Color.BLACK);
-		mTerrain.draw(canvas, mPaint);
+		mTerrainRenderer.draw(canvas, mWorld.getTerrain(), mPaint);
 	}
 
 	@Override
 	public boolean onTouch(View v, MotionEvent event) {
-		int x = (int) event.getX();
-		int y = (int) event.getY();
+		mInput.put(InputQueue.TOUCH, event.getAction(), event.getX(),
+				event.getY(), event.getEventTime());
+		return true;
+	}
 
-		boolean crosshairContains = mCrosshair.getBounds().contains(x, y);
-		boolean buttonContains = mGrenadeButton.getBounds().contains(x, y);
+	/**
+	 * Take everything the UI thread has queued up for us. This runs on the
+	 * game thread.
+	 */
+	private void handleInput() {
+		// Take the samples first, so a throw sees everything up to when
+		// the player let go
+		mThrowMeter.drain(mSamples);
+
+		InputQueue in = mInput;
+		while (in.take()) {
+			if (!mInitialized)
+				continue;
+
+			switch (in.type) {
+			case InputQueue.TOUCH:
+				handleTouch(in.action, (int) in.x, (int) in.y, in.time);
+				break;
+
+			case InputQueue.TRACKBALL:
+				handleTrackball(in.action, in.x, in.y);
+				break;
+			}
+		}
 
-		switch (event.getAction()) {
+		// However many readings came in, the preview only needs the last
+		if (mThrowingMode)
+			updatePreview();
+	}
+
+	/**
+	 * Point the preview where blue would throw right now. It only does any
+	 * work if the aim or the power has changed enough to see.
+	 */
+	private void updatePreview() {
+		Player thrower = mWorld.getBluePlayer();
+		aim(thrower, mAim);
+		mPreview.aim(mWorld.getTerrain(), thrower.getX(), thrower.getY()
+				- World.THROW_HEIGHT, mAim.x, mAim.y, getThrowPower());
+	}
+
+	/**
+	 * Work out the direction from the thrower to the crosshair
+	 * @param out receives it, as a unit vector
+	 */
+	private void aim(Player thrower, Vector2D out) {
+		Rect r = mCrosshair;
+		float dx = r.centerX() - thrower.getX();
+		float dy = r.centerY() - thrower.getY();
+
+		out.set(dx, dy).normalise();
+	}
+
+	/**
+	 * @param time when it happened, in SystemClock.uptimeMillis time
+	 */
+	private void handleTouch(int action, int x, int y, long time) {
+
+		boolean crosshairContains = mCrosshair.contains(x, y);
+		boolean buttonContains = mGrenadeButton.contains(x, y);
+
+		switch (action) {
 		case MotionEvent.ACTION_DOWN:
 
 			if (mThrowingMode && buttonContains) {
@@ -599,41 +923,41 @@ public class GrenadeView extends SurfaceView implements OnTouchListener,
 			}
 
 			else if (!mThrowingMode) {
-				centerDrawable(mCrosshair, x, y);
+				centerSprite(mCrosshair, mCrosshairSprite, x, y);
+			}
+
+			else if (!mPlayerThrowing) {
+				toggleCluster();
 			}
 
 			break;
 
 		case MotionEvent.ACTION_MOVE:
 			if (!mThrowingMode) {
-				centerDrawable(mCrosshair, x, y);
+				centerSprite(mCrosshair, mCrosshairSprite, x, y);
 			}
 			break;
 
 		case MotionEvent.ACTION_UP:
 			if (mPlayerThrowing) {
-				Rect r = mCrosshair.getBounds();
-				float dx = r.centerX() - mBluePlayer.getX();
-				float dy = r.centerY() - mBluePlayer.getY();
-				float mag = (float) Math.hypot(dx, dy);
-
-				float ux = dx / mag;
-				float uy = dy / mag;
-
-				float power = getThrowPower();
-				createGrenade(mBluePlayer.getX(), mBluePlayer.getY() - 10);
-				mGrenade.setVelocity(power * ux, power * uy);
+				Player thrower = mWorld.getBluePlayer();
+				aim(thrower, mAim);
+
+				// The throw is the hardest swing just before letting go
+				float power = THROW_FACTOR
+						* mThrowMeter.getPeak(time * 1000000);
+				mWorld.throwGrenade(thrower.getX(), thrower.getY()
+						- World.THROW_HEIGHT, power * mAim.x, power * mAim.y,
+						mCluster);
 				mPlayerThrowing = false;
 				mThrowingMode = false;
 
-				mCountdown.setVisibility(View.INVISIBLE);
-				mMessenger.setVisibility(View.INVISIBLE);
+				mCountdownVisible = false;
+				mUiHandler.sendEmptyMessage(MSG_HIDE_MESSAGES);
 			}
 
 			break;
 		}
-
-		return true;
 	}
 
 	private void requestStartFuse() {
@@ -642,40 +966,57 @@ public class GrenadeView extends SurfaceView implements OnTouchListener,
 		}
 
 		mPlayerThrowing = true;
-		mGrenadeTimer = GRENADE_FUSE;
-		mMessenger.setText(R.string.toss);
-		mCountdown.setVisibility(View.VISIBLE);
+		mWorld.startFuse();
+		mCountdownVisible = true;
+		mUiHandler.sendMessage(mUiHandler.obtainMessage(MSG_SHOW_MESSAGE,
+				R.string.toss, 0));
 	}
 
 	private void requestThrowingMode() {
-		// Don't enter throwing mode if there is a grenade or either of the
-		// players is still bouncing around
-		if (mGrenade == null && !mBluePlayer.getPhysics()
-				&& !mRedPlayer.getPhysics() && !mThrowingMode) {
+		// Don't enter throwing mode if it's red's go, if there is a grenade
+		// or if either of the players is still bouncing around
+		if (mWorld.getCurrentTurn() == World.TURN_BLUE && mWorld.isSettled()
+				&& !mThrowingMode) {
 			mThrowingMode = true;
-			mMessenger.setVisibility(View.VISIBLE);
-			mMessenger.setText(R.string.pullPin);
+			mCluster = false;
+			mUiHandler.sendMessage(mUiHandler.obtainMessage(MSG_SHOW_MESSAGE,
+					R.string.pullPin, 0));
 		}
 	}
 
+	/**
+	 * Swap between a plain grenade and a cluster grenade, before the pin
+	 * is pulled
+	 */
+	private void toggleCluster() {
+		mCluster = !mCluster;
+		mUiHandler.sendMessage(mUiHandler.obtainMessage(MSG_SHOW_MESSAGE,
+				mCluster ? R.string.pullPinCluster : R.string.pullPin, 0));
+	}
+
 	@Override
 	public boolean onTrackballEvent(MotionEvent event) {
-		int dx = (int) (TRACKBALL_SENSITIVITY * event.getX());
-		int dy = (int) (TRACKBALL_SENSITIVITY * event.getY());
+		mInput.put(InputQueue.TRACKBALL, event.getAction(), event.getX(),
+				event.getY(), event.getEventTime());
+		return true;
+	}
 
-		int x = mCrosshair.getBounds().centerX();
-		int y = mCrosshair.getBounds().centerY();
+	private void handleTrackball(int action, float tx, float ty) {
+		int dx = (int) (TRACKBALL_SENSITIVITY * tx);
+		int dy = (int) (TRACKBALL_SENSITIVITY * ty);
 
-		switch (event.getAction()) {
+		int x = mCrosshair.centerX();
+		int y = mCrosshair.centerY();
+
+		switch (action) {
 
 		case MotionEvent.ACTION_MOVE:
-			if (mThrowingMode || mGrenade != null || mBluePlayer.getPhysics()
-					|| mRedPlayer.getPhysics())
+			if (mThrowingMode || !mWorld.isSettled())
 				break;
 
 			x = Math.max(0, Math.min(getWidth(), x + dx));
 			y = Math.max(0, Math.min(getHeight(), y + dy));
-			centerDrawable(mCrosshair, x, y);
+			centerSprite(mCrosshair, mCrosshairSprite, x, y);
 			break;
 
 		case MotionEvent.ACTION_DOWN:
@@ -683,93 +1024,117 @@ public class GrenadeView extends SurfaceView implements OnTouchListener,
 				requestThrowingMode();
 			}
 		}
-
-		return true;
 	}
 
-	private void createGrenade(float x, float y) {
-		Resources r = getContext().getResources();
-		mGrenade = new RigidBody();
-		mGrenade.setPosition(x, y);
-		mGrenade.setDrawable(r.getDrawable(R.drawable.grenade));
-		mGrenade.setGravity(mGravity);
-		mGrenade.setElasticity(0.5f);
-		mGrenade.setFriction(0.5f);
+	@Override
+	public void onAccuracyChanged(Sensor sensor, int accuracy) {
+		// I don't care.
 	}
 
-	/**
-	 * Move a RigidBody object and control its bounce as well.
-	 * 
-	 * @param body
-	 * @return true if bounced
-	 */
-	private boolean moveBody(RigidBody body) {
-		if (body.getPhysics() == false)
-			return false;
-
-		body.tickPhysics(-1);
+	@Override
+	public void onSensorChanged(SensorEvent event) {
+		// Stamped on arrival rather than with event.timestamp, so they can
+		// be compared with touch events. System.nanoTime runs on the same
+		// clock as SystemClock.uptimeMillis.
+		mSamples.put(System.nanoTime(), event.values[0], event.values[1],
+				event.values[2]);
+	}
 
-		body.move(mDelay);
-		PointF current = body.getPoint();
+	@Override
+	public void surfaceCreated(SurfaceHolder holder) {
+		if (!mContinue)
+			return;
 
-		boolean bounced = false;
-		if (mTerrain.isIllegal(current.x, getHeight() - current.y)) {
-			Point warp = mTerrain.getWarpPoint(current);
-			body.setPosition(warp.x, warp.y);
-			body.bounce(mTerrain, warp.x, warp.y);
-			bounced = true;
-		}
-		return bounced;
+		mThread = new GameThread();
+		mThread.start();
 	}
 
 	@Override
-	public void onAccuracyChanged(Sensor sensor, int accuracy) {
-		// I don't care.
+	public void surfaceChanged(SurfaceHolder holder, int format, int width,
+			int height) {
+		mSurfaceWidth = width;
+		mSurfaceHeight = height;
 	}
 
 	@Override
-	public void onSensorChanged(SensorEvent event) {
-		mGX = event.values[0];
-		mGY = event.values[1];
-		mGZ = event.values[2];
+	public void surfaceDestroyed(SurfaceHolder holder) {
+		// The surface is gone once we return, so the thread must be too
+		stopThread();
 	}
 
-	public void onDestroy() {
-		mContinue = false;
+	/**
+	 * Hold the game while the activity is in the background
+	 */
+	public void pause() {
+		if (mThread != null)
+			mThread.setPaused(true);
 	}
 
-	public float getThrowPower() {
-		return Math
-				.abs(THROW_FACTOR
-						* (float) ((Math
-								.sqrt(mGX * mGX + mGY * mGY + mGZ * mGZ) / 9.8) - 1));
+	public void resume() {
+		if (mThread != null)
+			mThread.setPaused(false);
 	}
 
-	private MediaPlayer loadSound(int rid) {
-		MediaPlayer mp = MediaPlayer.create(getContext(), rid);
-		mp.setOnCompletionListener(this);
-		return mp;
+	/**
+	 * Stop the game for good
+	 */
+	public void die() {
+		mContinue = false;
+		stopThread();
+		mOpponent.shutdown();
+		finishMatch();
+		saveProfile();
+		mSound.release();
+		mSprites.recycle();
 	}
 
-	@Override
-	public void onCompletion(MediaPlayer mp) {
-		mp.seekTo(0);
+	/**
+	 * Save everything the profiler has timed, if anything
+	 */
+	private void saveProfile() {
+		if (mProfiler == null)
+			return;
+
+		OutputStream out = null;
+		try {
+			out = getContext().openFileOutput(PROFILE_FILE, Context.MODE_PRIVATE);
+			mProfiler.write(new OutputStreamWriter(out));
+		} catch (IOException e) {
+			Log.w(TAG, "Couldn't save the profile", e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// Nothing more we can do
+				}
+			}
+		}
 	}
 
-	private void playSound(MediaPlayer mp) {
-		if (!mp.isPlaying()) {
-			mp.start();
+	private void stopThread() {
+		if (mThread != null) {
+			mThread.halt();
+			mThread = null;
 		}
+		mInput.clear();
+		mSamples.clear();
+		mThrowMeter.reset();
 	}
 
-	private Drawable getGiblet() {
-		return getContext().getResources().getDrawable(
-				GIBLETS[RNG.nextInt(GIBLETS.length)]);
+	/**
+	 * How hard the player would throw if they let go now
+	 */
+	public float getThrowPower() {
+		return THROW_FACTOR * mThrowMeter.getPeak();
 	}
 
-	private void centerDrawable(Drawable d, int x, int y) {
-		int w = d.getIntrinsicWidth();
-		int h = d.getIntrinsicHeight();
-		d.setBounds(x - w / 2, y - h / 2, x + w / 2, y + h / 2);
+	/**
+	 * Put the bounds of a sprite so it is centred on (x, y)
+	 */
+	private void centerSprite(Rect bounds, int sprite, int x, int y) {
+		int w = mSprites.getWidth(sprite);
+		int h = mSprites.getHeight(sprite);
+		bounds.set(x - w / 2, y - h / 2, x - w / 2 + w, y - h / 2 + h);
 	}
 }
@@ -0,0 +1,63 @@
+package org.oep.grenade;
+
+/**
+ * Hands input from the UI thread to the game loop thread. Events are kept
+ * in a fixed ring of primitive slots, so queueing them does not allocate.
+ * If the loop falls so far behind that the ring fills up, new events are
+ * dropped.
+ */
+public class InputQueue {
+	public static final int TOUCH = 0;
+	public static final int TRACKBALL = 1;
+
+	private static final int CAPACITY = 128;
+
+	private final int[] mType = new int[CAPACITY];
+	private final int[] mAction = new int[CAPACITY];
+	private final float[] mX = new float[CAPACITY];
+	private final float[] mY = new float[CAPACITY];
+	private final long[] mTime = new long[CAPACITY];
+
+	private int mHead, mSize;
+
+	/** The event most recently taken off the queue */
+	public int type, action;
+	public float x, y;
+	public long time;
+
+	public synchronized boolean put(int type, int action, float x, float y, long time) {
+		if(mSize == CAPACITY) return false;
+
+		int i = (mHead + mSize) % CAPACITY;
+		mType[i] = type;
+		mAction[i] = action;
+		mX[i] = x;
+		mY[i] = y;
+		mTime[i] = time;
+		mSize++;
+		return true;
+	}
+
+	/**
+	 * Take the oldest event off the queue and copy it into the public
+	 * fields. Only the loop thread should call this.
+	 * @return false if the queue was empty
+	 */
+	public synchronized boolean take() {
+		if(mSize == 0) return false;
+
+		type = mType[mHead];
+		action = mAction[mHead];
+		x = mX[mHead];
+		y = mY[mHead];
+		time = mTime[mHead];
+
+		mHead = (mHead + 1) % CAPACITY;
+		mSize--;
+		return true;
+	}
+
+	public synchronized void clear() {
+		mHead = mSize = 0;
+	}
+}
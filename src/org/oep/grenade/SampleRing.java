@@ -0,0 +1,82 @@
+package org.oep.grenade;
+
+/**
+ * Hands accelerometer samples from the sensor thread to the game loop
+ * thread without locking. There must only ever be one thread putting
+ * samples in and one taking them out. Each side owns one of the two
+ * counters and only reads the other, so publishing a sample or freeing a
+ * slot is a single volatile write.
+ *
+ * The counters only ever go up and wrap around, so the slot for a counter
+ * is its low bits and the number of samples waiting is the difference
+ * between them. If the loop falls so far behind that the ring fills up,
+ * new samples are dropped.
+ */
+public class SampleRing {
+	/** A power of two, so slots can be found with a mask */
+	private static final int CAPACITY = 256;
+	private static final int MASK = CAPACITY - 1;
+
+	private final long[] mTime = new long[CAPACITY];
+	private final float[] mX = new float[CAPACITY];
+	private final float[] mY = new float[CAPACITY];
+	private final float[] mZ = new float[CAPACITY];
+
+	/** How many samples have been taken; only the consumer writes this */
+	private volatile int mTaken;
+
+	/** How many samples have been put; only the producer writes this */
+	private volatile int mPut;
+
+	/** The sample most recently taken off the ring */
+	public long time;
+	public float x, y, z;
+
+	/**
+	 * Add a sample. Only the producer thread should call this.
+	 * @param time when it was taken, in nanoseconds
+	 * @return false if the ring was full and it was dropped
+	 */
+	public boolean put(long time, float x, float y, float z) {
+		int put = mPut;
+		if(put - mTaken == CAPACITY) return false;
+
+		int i = put & MASK;
+		mTime[i] = time;
+		mX[i] = x;
+		mY[i] = y;
+		mZ[i] = z;
+
+		// Only now can the consumer see it
+		mPut = put + 1;
+		return true;
+	}
+
+	/**
+	 * Take the oldest sample off the ring and copy it into the public
+	 * fields. Only the consumer thread should call this.
+	 * @return false if the ring was empty
+	 */
+	public boolean take() {
+		int taken = mTaken;
+		if(taken == mPut) return false;
+
+		int i = taken & MASK;
+		time = mTime[i];
+		x = mX[i];
+		y = mY[i];
+		z = mZ[i];
+
+		// Hand the slot back to the producer
+		mTaken = taken + 1;
+		return true;
+	}
+
+	/**
+	 * Throw away everything waiting. This counts as taking, so only call
+	 * it from the consumer thread, or while there isn't one.
+	 */
+	public void clear() {
+		mTaken = mPut;
+	}
+}
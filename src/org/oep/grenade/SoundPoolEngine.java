@@ -0,0 +1,46 @@
+package org.oep.grenade;
+
+import org.oep.grenade.sound.SoundEngine;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.SoundPool;
+
+/**
+ * Plays sound effects through a SoundPool. Sounds are decoded when they
+ * are loaded, so playing one only has to start a stream, and SoundPool
+ * looks after stealing voices by priority itself.
+ */
+public class SoundPoolEngine implements SoundEngine {
+	private SoundPool mPool;
+
+	/**
+	 * @param voices the most sounds that can play at once
+	 */
+	public SoundPoolEngine(int voices) {
+		mPool = new SoundPool(voices, AudioManager.STREAM_MUSIC, 0);
+	}
+
+	/**
+	 * Load and decode a sound from the resources. It can't be played
+	 * until the decoding is done, so load sounds well before they are
+	 * needed.
+	 * @return its id, for play
+	 */
+	public int load(Context context, int rid) {
+		return mPool.load(context, rid, 1);
+	}
+
+	public int play(int sound, float left, float right, int priority, float rate) {
+		rate = Math.max(MIN_RATE, Math.min(MAX_RATE, rate));
+		return mPool.play(sound, left, right, priority, 0, rate);
+	}
+
+	public void stop(int stream) {
+		mPool.stop(stream);
+	}
+
+	public void release() {
+		mPool.release();
+	}
+}
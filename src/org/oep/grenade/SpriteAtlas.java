@@ -0,0 +1,134 @@
+package org.oep.grenade;
+
+import java.util.ArrayList;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Every image the game draws, decoded once and packed into one bitmap.
+ * Images are added by resource id, which gives back a sprite id, and then
+ * build decodes them all and lays them out in rows. From then on a sprite
+ * is drawn by copying its part of the atlas, so nothing is decoded, looked
+ * up or changed while the game runs.
+ *
+ * Drawing uses rectangles kept inside the atlas, so only one thread should
+ * draw with it.
+ */
+public class SpriteAtlas {
+	/** How wide the atlas is, unless a sprite is wider */
+	public static final int WIDTH = 128;
+
+	/** The gap left around each sprite, so neighbours never bleed */
+	private static final int PADDING = 1;
+
+	private final ArrayList<Integer> mResources = new ArrayList<Integer>();
+
+	/** Where each sprite is in the atlas */
+	private Rect[] mSources;
+
+	private Bitmap mBitmap;
+
+	/** Where the sprite being drawn goes */
+	private RectF mDestination = new RectF();
+
+	/**
+	 * Ask for an image to be in the atlas
+	 * @param rid its drawable resource id
+	 * @return its sprite id
+	 */
+	public int add(int rid) {
+		if(mBitmap != null) throw new IllegalStateException("The atlas has already been built");
+
+		mResources.add(rid);
+		return mResources.size() - 1;
+	}
+
+	/**
+	 * Decode every image that has been added and pack them in
+	 */
+	public void build(Resources resources) {
+		if(mBitmap != null) throw new IllegalStateException("The atlas has already been built");
+
+		int count = mResources.size();
+		Bitmap[] images = new Bitmap[count];
+		int width = WIDTH;
+		for(int i = 0; i < count; i++) {
+			images[i] = BitmapFactory.decodeResource(resources, mResources.get(i));
+			if(images[i] == null) throw new IllegalArgumentException("Resource " + mResources.get(i) + " isn't an image");
+
+			width = Math.max(width, images[i].getWidth() + 2 * PADDING);
+		}
+
+		// Place the tallest first, so each row wastes as little as it can
+		int[] order = new int[count];
+		for(int i = 0; i < count; i++) {
+			int j = i;
+			while(j > 0 && images[order[j - 1]].getHeight() < images[i].getHeight()) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = i;
+		}
+
+		// Fill rows left to right, starting a new row under the last when
+		// a sprite won't fit
+		mSources = new Rect[count];
+		int x = 0, y = 0, rowHeight = 0;
+		for(int n = 0; n < count; n++) {
+			int i = order[n];
+			int w = images[i].getWidth() + 2 * PADDING;
+			int h = images[i].getHeight() + 2 * PADDING;
+
+			if(x + w > width) {
+				x = 0;
+				y += rowHeight;
+				rowHeight = 0;
+			}
+
+			mSources[i] = new Rect(x + PADDING, y + PADDING,
+					x + w - PADDING, y + h - PADDING);
+			x += w;
+			rowHeight = Math.max(rowHeight, h);
+		}
+
+		mBitmap = Bitmap.createBitmap(width, Math.max(1, y + rowHeight),
+				Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(mBitmap);
+		for(int i = 0; i < count; i++) {
+			canvas.drawBitmap(images[i], mSources[i].left, mSources[i].top, null);
+			images[i].recycle();
+		}
+	}
+
+	public int getWidth(int sprite) {
+		return mSources[sprite].width();
+	}
+
+	public int getHeight(int sprite) {
+		return mSources[sprite].height();
+	}
+
+	/**
+	 * Draw a sprite at its own size with its top left corner at
+	 * (left, top)
+	 * @param paint for alpha and the like, or null
+	 */
+	public void draw(Canvas canvas, int sprite, float left, float top, Paint paint) {
+		Rect source = mSources[sprite];
+		mDestination.set(left, top, left + source.width(), top + source.height());
+		canvas.drawBitmap(mBitmap, source, mDestination, paint);
+	}
+
+	/**
+	 * Free the atlas. Nothing can be drawn after this.
+	 */
+	public void recycle() {
+		if(mBitmap != null) mBitmap.recycle();
+	}
+}
@@ -0,0 +1,72 @@
+package org.oep.grenade;
+
+import org.oep.grenade.world.Terrain;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+
+/**
+ * Draws a Terrain from a cached image. Only the columns the terrain reports
+ * as changed are repainted, and the bitmap is only reallocated when the
+ * terrain grows taller than it or a different terrain comes along.
+ */
+public class TerrainRenderer {
+	private Terrain mTerrain;
+
+	private Bitmap mCachedImage;
+
+	/** The canvas drawing into mCachedImage, kept so it can be patched */
+	private Canvas mCacheCanvas;
+	private Paint mFillPaint = new Paint();
+	private Paint mClearPaint = new Paint();
+
+	public TerrainRenderer() {
+		mClearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+	}
+
+	public void draw(Canvas canvas, Terrain terrain, Paint paint) {
+		if(recache(terrain) == false) return;
+
+		canvas.drawBitmap(mCachedImage, 0, terrain.getBase() - mCachedImage.getHeight(), paint);
+	}
+
+	/**
+	 * Bring the cached image up to date with the terrain
+	 * @return false if there is nothing to draw
+	 */
+	private boolean recache(Terrain terrain) {
+		int width = terrain.getWidth();
+		if(width == 0) return false;
+
+		int left = terrain.getDirtyLeft(), right = terrain.getDirtyRight();
+
+		if(terrain != mTerrain || mCachedImage == null || mCachedImage.getWidth() != width
+				|| mCachedImage.getHeight() < terrain.getMaximum()) {
+			if(mCachedImage != null) mCachedImage.recycle();
+
+			mCachedImage = Bitmap.createBitmap(width, Math.max(1, terrain.getMaximum()), Bitmap.Config.ARGB_8888);
+			mCacheCanvas = new Canvas(mCachedImage);
+			mTerrain = terrain;
+			left = 0;
+			right = width - 1;
+		}
+
+		if(left > right) return true;
+
+		int h = mCachedImage.getHeight();
+		mCacheCanvas.drawRect(left, 0, right + 1, h, mClearPaint);
+
+		for(int i = left; i <= right; i++) {
+			for(int s = 0; s < terrain.getSpanCount(i); s++) {
+				mCacheCanvas.drawRect(i, h - terrain.getSpanTop(i, s), i + 1,
+						h - terrain.getSpanBottom(i, s), mFillPaint);
+			}
+		}
+
+		terrain.clean();
+		return true;
+	}
+}
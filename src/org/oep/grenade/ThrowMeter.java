@@ -0,0 +1,101 @@
+package org.oep.grenade;
+
+/**
+ * Works out how hard the player is throwing from accelerometer samples.
+ * The strength of a sample is how far the acceleration is from plain
+ * gravity, as a fraction of gravity. The samples are smoothed with a
+ * low-pass filter to take the jitter out, and the strongest smoothed
+ * sample in the last RELEASE_WINDOW is the throw.
+ *
+ * Only the game loop thread should use this.
+ */
+public class ThrowMeter {
+	/** How far back from letting go to look for the throw, in nanoseconds */
+	public static final long RELEASE_WINDOW = 300 * 1000000L;
+
+	/** The time constant of the low-pass filter, in nanoseconds */
+	public static final long SMOOTHING = 15 * 1000000L;
+
+	public static final float GRAVITY = 9.8f;
+
+	/**
+	 * How many smoothed samples are kept, as a power of two. This must
+	 * cover RELEASE_WINDOW at the fastest rate the sensor goes.
+	 */
+	private static final int HISTORY = 256;
+	private static final int MASK = HISTORY - 1;
+
+	private final long[] mTime = new long[HISTORY];
+	private final float[] mStrength = new float[HISTORY];
+
+	/** How many samples have been added since the last reset */
+	private int mCount;
+
+	/** The smoothed magnitude of the acceleration */
+	private float mFiltered;
+
+	/**
+	 * Take everything waiting in the ring
+	 */
+	public void drain(SampleRing ring) {
+		while(ring.take()) {
+			add(ring.time, ring.x, ring.y, ring.z);
+		}
+	}
+
+	/**
+	 * @param time when the sample was taken, in nanoseconds
+	 */
+	public void add(long time, float x, float y, float z) {
+		float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+
+		if(mCount == 0) {
+			mFiltered = magnitude;
+		}
+		else {
+			// Move towards the new sample by how long it has been, so the
+			// smoothing is the same whatever rate the sensor runs at
+			long dt = Math.max(0, time - mTime[(mCount - 1) & MASK]);
+			mFiltered += (magnitude - mFiltered) * dt / (SMOOTHING + dt);
+		}
+
+		int i = mCount & MASK;
+		mTime[i] = time;
+		mStrength[i] = Math.abs(mFiltered / GRAVITY - 1);
+		mCount++;
+	}
+
+	/**
+	 * The strongest the throw was in the RELEASE_WINDOW up to the given
+	 * time
+	 * @param release when the player let go, in nanoseconds
+	 */
+	public float getPeak(long release) {
+		float peak = 0;
+		int oldest = Math.max(0, mCount - HISTORY);
+
+		// Go back from the newest sample until we leave the window
+		for(int n = mCount - 1; n >= oldest; n--) {
+			int i = n & MASK;
+			long time = mTime[i];
+			if(release - time > RELEASE_WINDOW) break;
+			if(time > release) continue;
+
+			peak = Math.max(peak, mStrength[i]);
+		}
+
+		return peak;
+	}
+
+	/**
+	 * The strongest the throw has been in the last RELEASE_WINDOW, up to
+	 * the newest sample
+	 */
+	public float getPeak() {
+		return mCount == 0 ? 0 : getPeak(mTime[(mCount - 1) & MASK]);
+	}
+
+	public void reset() {
+		mCount = 0;
+	}
+}
@@ -0,0 +1,182 @@
+package org.oep.grenade.sound;
+
+import java.util.ArrayList;
+
+/**
+ * A SoundEngine that mixes in plain Java, for running without Android.
+ * Sounds are mono 16-bit samples at the output rate, and mix writes them
+ * out as interleaved stereo. Whoever owns the output calls mix for each
+ * buffer, so a sound starts at most one buffer after it is played.
+ *
+ * Playing and mixing can happen on different threads. Both hold the lock
+ * only for as long as one play or one buffer takes, and neither
+ * allocates once the sounds are loaded.
+ */
+public class SoftwareMixer implements SoundEngine {
+	/** The most frames mix works on at a time */
+	public static final int CHUNK = 256;
+
+	/** Positions in a sound are fixed point, with this many fraction bits */
+	private static final int FRACTION = 16;
+	private static final int ONE = 1 << FRACTION;
+
+	private final ArrayList<short[]> mSounds = new ArrayList<short[]>();
+
+	/** Each voice's sound, or null if it is free */
+	private final short[][] mSample;
+	private final int[] mStream;
+	private final int[] mPriority;
+	private final long[] mPosition;
+	private final int[] mStep;
+	private final int[] mLeft, mRight;
+
+	/** The id of the last stream played; each one's is bigger */
+	private int mLastStream;
+
+	private final int[] mMix = new int[2 * CHUNK];
+
+	private boolean mReleased;
+
+	/**
+	 * @param voices the most sounds that can play at once
+	 */
+	public SoftwareMixer(int voices) {
+		if(voices < 1) throw new IllegalArgumentException("Need at least one voice");
+
+		mSample = new short[voices][];
+		mStream = new int[voices];
+		mPriority = new int[voices];
+		mPosition = new long[voices];
+		mStep = new int[voices];
+		mLeft = new int[voices];
+		mRight = new int[voices];
+	}
+
+	/**
+	 * @param samples a mono sound at the output rate
+	 * @return its id, for play
+	 */
+	public synchronized int load(short[] samples) {
+		mSounds.add(samples);
+		return mSounds.size();
+	}
+
+	public synchronized int play(int sound, float left, float right, int priority, float rate) {
+		if(mReleased) throw new IllegalStateException("The mixer has been released");
+		if(sound < 1 || sound > mSounds.size()) return 0;
+
+		int voice = pickVoice(priority);
+		if(voice < 0) return 0;
+
+		rate = Math.max(MIN_RATE, Math.min(MAX_RATE, rate));
+
+		mSample[voice] = mSounds.get(sound - 1);
+		mStream[voice] = ++mLastStream;
+		mPriority[voice] = priority;
+		mPosition[voice] = 0;
+		mStep[voice] = (int) (rate * ONE);
+		mLeft[voice] = volume(left);
+		mRight[voice] = volume(right);
+		return mLastStream;
+	}
+
+	/**
+	 * Find a voice for a sound of the given priority: a free one if there
+	 * is one, or else the oldest of the least important
+	 * @return the voice, or -1 if they are all playing more important
+	 *         sounds
+	 */
+	private int pickVoice(int priority) {
+		int victim = -1;
+
+		for(int v = 0; v < mSample.length; v++) {
+			if(mSample[v] == null) return v;
+
+			if(victim < 0 || mPriority[v] < mPriority[victim]
+					|| (mPriority[v] == mPriority[victim] && mStream[v] < mStream[victim])) {
+				victim = v;
+			}
+		}
+
+		return mPriority[victim] <= priority ? victim : -1;
+	}
+
+	/**
+	 * Turn a volume from 0 to 1 into a fixed point multiplier
+	 */
+	private static int volume(float v) {
+		return (int) (Math.max(0, Math.min(1, v)) * ONE);
+	}
+
+	public synchronized void stop(int stream) {
+		for(int v = 0; v < mSample.length; v++) {
+			if(mSample[v] != null && mStream[v] == stream) {
+				mSample[v] = null;
+			}
+		}
+	}
+
+	public synchronized void release() {
+		for(int v = 0; v < mSample.length; v++) {
+			mSample[v] = null;
+		}
+		mSounds.clear();
+		mReleased = true;
+	}
+
+	/**
+	 * How many voices are playing
+	 */
+	public synchronized int getActiveVoices() {
+		int active = 0;
+		for(int v = 0; v < mSample.length; v++) {
+			if(mSample[v] != null) active++;
+		}
+		return active;
+	}
+
+	/**
+	 * Mix the next frames of everything playing into out, as interleaved
+	 * left and right samples. Sounds that run out are freed.
+	 */
+	public void mix(short[] out, int frames) {
+		for(int done = 0; done < frames; done += CHUNK) {
+			mixChunk(out, 2 * done, Math.min(CHUNK, frames - done));
+		}
+	}
+
+	private synchronized void mixChunk(short[] out, int offset, int frames) {
+		int[] mix = mMix;
+		for(int i = 0; i < 2 * frames; i++) {
+			mix[i] = 0;
+		}
+
+		for(int v = 0; v < mSample.length; v++) {
+			short[] sample = mSample[v];
+			if(sample == null) continue;
+
+			long position = mPosition[v];
+			long end = (long) sample.length << FRACTION;
+			int step = mStep[v], left = mLeft[v], right = mRight[v];
+
+			for(int i = 0; i < frames && position < end; i++) {
+				// Blend between the two samples either side of the position
+				int at = (int) (position >> FRACTION);
+				int fraction = (int) (position & (ONE - 1));
+				int next = (at + 1 < sample.length) ? sample[at + 1] : 0;
+				int s = sample[at] + (int) ((long) (next - sample[at]) * fraction >> FRACTION);
+
+				mix[2 * i] += (int) ((long) s * left >> FRACTION);
+				mix[2 * i + 1] += (int) ((long) s * right >> FRACTION);
+				position += step;
+			}
+
+			if(position >= end) mSample[v] = null;
+			else mPosition[v] = position;
+		}
+
+		for(int i = 0; i < 2 * frames; i++) {
+			out[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+		}
+	}
+}
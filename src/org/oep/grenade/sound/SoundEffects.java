@@ -0,0 +1,65 @@
+package org.oep.grenade.sound;
+
+import org.oep.grenade.world.Player;
+import org.oep.grenade.world.World;
+
+/**
+ * Plays the sound effect for whatever happens in the world, through any
+ * SoundEngine, so the game and anything run without a screen make the
+ * same sounds.
+ */
+public class SoundEffects implements World.Listener {
+	/**
+	 * The most explosions heard for one batch of blasts. Each is played a
+	 * little slower than the last, so a big batch sounds bigger without
+	 * taking every voice.
+	 */
+	public static final int EXPLOSION_VOICES = 3;
+
+	/** A splat matters more than yet another explosion */
+	public static final int EXPLOSION_PRIORITY = 1;
+	public static final int SPLAT_PRIORITY = 2;
+
+	private final SoundEngine mEngine;
+	private final int mExplosion, mSplat;
+
+	/** How wide the world is, for panning */
+	private int mWidth;
+
+	/**
+	 * @param explosion the id the explosion sound was loaded as
+	 * @param splat the id the splat sound was loaded as
+	 */
+	public SoundEffects(SoundEngine engine, int explosion, int splat) {
+		mEngine = engine;
+		mExplosion = explosion;
+		mSplat = splat;
+	}
+
+	/**
+	 * Set how wide the world is, so sounds can be panned towards where
+	 * they happened. Until this is set they are played in the middle.
+	 */
+	public void setWidth(int width) {
+		mWidth = width;
+	}
+
+	public void onExplosion(int x, int y, int count) {
+		int voices = Math.min(count, EXPLOSION_VOICES);
+		for(int i = 0; i < voices; i++) {
+			play(mExplosion, x, EXPLOSION_PRIORITY, 1 - 0.15f * i);
+		}
+	}
+
+	public void onSplat(Player player) {
+		play(mSplat, player.getX(), SPLAT_PRIORITY, 1);
+	}
+
+	/**
+	 * Play a sound panned towards where it happened
+	 */
+	private void play(int sound, float x, int priority, float rate) {
+		float pan = mWidth > 0 ? Math.max(0, Math.min(1, x / mWidth)) : 0.5f;
+		mEngine.play(sound, 1 - pan / 2, 0.5f + pan / 2, priority, rate);
+	}
+}
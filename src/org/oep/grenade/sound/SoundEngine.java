@@ -0,0 +1,40 @@
+package org.oep.grenade.sound;
+
+/**
+ * Plays short sound effects, any number at once, up to however many
+ * voices the engine has. When they are all busy, a new sound takes over
+ * the voice with the lowest priority, the oldest first among equals. If
+ * every voice is playing something more important, the new sound is
+ * dropped.
+ *
+ * How sounds are loaded is up to each engine; they are played by the id
+ * loading gave back.
+ */
+public interface SoundEngine {
+	/** The slowest and fastest a sound can be played */
+	float MIN_RATE = 0.5f;
+	float MAX_RATE = 2.0f;
+
+	/**
+	 * Start a sound playing
+	 * @param sound the id it was loaded as
+	 * @param left the volume on the left, from 0 to 1
+	 * @param right the volume on the right, from 0 to 1
+	 * @param priority higher takes precedence over lower
+	 * @param rate how fast to play it, from MIN_RATE to MAX_RATE
+	 * @return an id for the voice it is playing on, or 0 if it wasn't
+	 *         played
+	 */
+	int play(int sound, float left, float right, int priority, float rate);
+
+	/**
+	 * Cut off a sound early. Nothing happens if it has already finished.
+	 * @param stream what play gave back
+	 */
+	void stop(int stream);
+
+	/**
+	 * Let go of everything. Nothing can be played after this.
+	 */
+	void release();
+}
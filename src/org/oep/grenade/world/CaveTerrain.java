@@ -0,0 +1,213 @@
+package org.oep.grenade.world;
+
+import java.util.Random;
+
+/**
+ * A terrain that can have caves and overhangs. Each column is kept as a
+ * sorted list of solid spans rather than a single height, so a blast
+ * punches a hole instead of flattening everything above it.
+ *
+ * The inherited heightfield holds the top of each column, which keeps the
+ * surface queries and the index working as before.
+ */
+public class CaveTerrain extends Terrain {
+	/**
+	 * The solid spans of each column as [bottom, top) pairs in our local
+	 * orientation, lowest first. Spans never touch, so there is always at
+	 * least one empty row between them.
+	 */
+	private int[][] mSpans;
+	private int[] mSpanCount;
+
+	public CaveTerrain(int width, int maxHeight, int minHeight, int base) {
+		this(width, maxHeight, minHeight, base, new Random());
+	}
+
+	public CaveTerrain(int width, int maxHeight, int minHeight, int base, Random rng) {
+		super(width, maxHeight, minHeight, base, rng);
+
+		mSpans = new int[width][];
+		mSpanCount = new int[width];
+
+		for(int i = 0; i < width; i++) {
+			mSpans[i] = new int[] { 0, mTerrain[i] };
+			mSpanCount[i] = mTerrain[i] > 0 ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Find the highest span in column x that starts at or below y
+	 * @return the index of the span, or -1 if there is none
+	 */
+	private int spanAtOrBelow(int x, int y) {
+		int[] spans = mSpans[x];
+		int lo = 0, hi = mSpanCount[x] - 1, found = -1;
+
+		while(lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if(spans[2 * mid] <= y) {
+				found = mid;
+				lo = mid + 1;
+			}
+			else
+				hi = mid - 1;
+		}
+		return found;
+	}
+
+	@Override
+	public boolean isIllegal(int x, int y) {
+		if(x < 0 || x >= mTerrain.length || y < 0) return true;
+
+		int s = spanAtOrBelow(x, y);
+		return s >= 0 && y < mSpans[x][2 * s + 1];
+	}
+
+	@Override
+	public int floorAt(int x, int y) {
+		if(x < 0 || x >= mTerrain.length) throw new IllegalArgumentException("Bad index passed");
+
+		int s = spanAtOrBelow(x, y);
+		return s < 0 ? 0 : mSpans[x][2 * s + 1];
+	}
+
+	@Override
+	protected int nearestFree(int x, int y) {
+		y = Math.max(0, y);
+		
+		int s = spanAtOrBelow(x, y);
+		if(s < 0) return y;
+
+		int bottom = mSpans[x][2 * s], top = mSpans[x][2 * s + 1];
+		if(y >= top) return y;
+
+		// Just under the span is empty as long as the span is off the floor
+		if(bottom > 0 && y - (bottom - 1) < top - y)
+			return bottom - 1;
+		return top;
+	}
+
+	@Override
+	protected boolean enter(int c, float from, float to, int step, Contact out) {
+		int[] spans = mSpans[c];
+		int count = mSpanCount[c];
+		
+		// Anything below the bottom of the world is solid
+		if(from < 0) {
+			out.y = from;
+			out.nx = -step;
+			out.ny = 0;
+			return true;
+		}
+		
+		int s = spanAtOrBelow(c, (int) from);
+		
+		if(s >= 0 && from < spans[2 * s + 1]) {
+			// We came in through the side of a span
+			out.y = from;
+			if(s == count - 1) {
+				out.nx = getNormalX(c);
+				out.ny = getNormalY(c);
+			}
+			else {
+				out.nx = -step;
+				out.ny = 0;
+			}
+			return true;
+		}
+		
+		if(to < from) {
+			// Falling onto the span below, or the bottom of the world
+			int floor = s >= 0 ? spans[2 * s + 1] : 0;
+			if(to >= floor) return false;
+			
+			out.y = floor;
+			if(s == count - 1) {
+				out.nx = getNormalX(c);
+				out.ny = getNormalY(c);
+			}
+			else {
+				out.nx = 0;
+				out.ny = -1;
+			}
+			return true;
+		}
+		
+		if(to > from && s + 1 < count && to >= spans[2 * (s + 1)]) {
+			// Rising into the underside of the span above. Stop half a
+			// row short so the contact is still in the open.
+			out.y = Math.max(from, spans[2 * (s + 1)] - 0.5f);
+			out.nx = 0;
+			out.ny = 1;
+			return true;
+		}
+		
+		return false;
+	}
+
+	@Override
+	protected boolean carveColumn(int i, int top, int bottom) {
+		// Convert the hole into our local orientation
+		int holeBottom = mBase - bottom, holeTop = mBase - top;
+		if(holeTop <= holeBottom) return false;
+
+		int[] spans = mSpans[i];
+		int count = mSpanCount[i];
+		boolean changed = false;
+
+		// Worst case the hole splits one span in two
+		if(2 * (count + 1) > spans.length) {
+			int[] bigger = new int[2 * (count + 1)];
+			System.arraycopy(spans, 0, bigger, 0, 2 * count);
+			spans = mSpans[i] = bigger;
+		}
+
+		for(int s = 0; s < count; s++) {
+			int lo = spans[2 * s], hi = spans[2 * s + 1];
+			if(hi <= holeBottom || lo >= holeTop) continue;
+
+			changed = true;
+
+			if(lo < holeBottom && hi > holeTop) {
+				// Split the span around the hole
+				System.arraycopy(spans, 2 * (s + 1), spans, 2 * (s + 2), 2 * (count - s - 1));
+				spans[2 * s + 1] = holeBottom;
+				spans[2 * s + 2] = holeTop;
+				spans[2 * s + 3] = hi;
+				count++;
+				break;
+			}
+			else if(lo < holeBottom) {
+				spans[2 * s + 1] = holeBottom;
+			}
+			else if(hi > holeTop) {
+				spans[2 * s] = holeTop;
+			}
+			else {
+				// The whole span is gone
+				System.arraycopy(spans, 2 * (s + 1), spans, 2 * s, 2 * (count - s - 1));
+				count--;
+				s--;
+			}
+		}
+
+		mSpanCount[i] = count;
+		mTerrain[i] = count > 0 ? spans[2 * count - 1] : 0;
+		return changed;
+	}
+
+	@Override
+	public int getSpanCount(int x) {
+		return mSpanCount[x];
+	}
+
+	@Override
+	public int getSpanBottom(int x, int s) {
+		return mSpans[x][2 * s];
+	}
+
+	@Override
+	public int getSpanTop(int x, int s) {
+		return mSpans[x][2 * s + 1];
+	}
+}
@@ -0,0 +1,319 @@
+package org.oep.grenade.world;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A terrain that can be far wider than the screen. It is generated in
+ * fixed-width chunks by the same slope random walk Terrain uses, so any chunk
+ * can be thrown away and rebuilt from the seed. Only a handful of chunks are
+ * kept in memory; the least recently used one is evicted to make room.
+ *
+ * Carving is recorded in a small per-chunk edit log and replayed whenever a
+ * chunk is rebuilt, so craters survive eviction. Columns are addressed from
+ * 0 upwards and heights are in our local orientation, as in Terrain.
+ */
+public class ChunkedTerrain {
+	public static final int CHUNK_WIDTH = 256;
+
+	/** How many chunks are kept in memory by default */
+	public static final int DEFAULT_BUDGET = 8;
+
+	/**
+	 * Edit log entry types, followed by their arguments. A batch of circles
+	 * is followed by how many there are and then each one's x, y and radius.
+	 */
+	private static final int EDIT_CIRCLE = 0;
+	private static final int EDIT_STROKE = 1;
+	private static final int EDIT_CIRCLES = 2;
+
+	private long mSeed;
+	private int mMaxHeight, mMinHeight;
+	private int mBase;
+
+	private Random mRandom = new Random();
+
+	/** The walk state at the start of each chunk we have reached so far */
+	private int[] mStarts;
+	private int mStartCount;
+
+	/** The edit log of each chunk */
+	private int[][] mLogs = new int[0][];
+	private int[] mLogLengths = new int[0];
+
+	/** The chunks held in memory, and when each was last used */
+	private int[] mSlotChunk;
+	private long[] mSlotUsed;
+	private int[][] mSlotHeights;
+	private long mClock;
+
+	/** The edit being recorded */
+	private int[] mEdit = new int[6];
+
+	/** Scratch space for the walk and for replaying carves */
+	private int[] mWalk = new int[Terrain.WALK_STATE];
+	private int[] mScratch = new int[CHUNK_WIDTH];
+	private int[] mCarveTop = new int[CHUNK_WIDTH];
+	private int[] mCarveBottom = new int[CHUNK_WIDTH];
+
+	public ChunkedTerrain(long seed, int maxHeight, int minHeight, int base) {
+		this(seed, maxHeight, minHeight, base, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * @param seed
+	 * @param maxHeight
+	 * @param minHeight
+	 * @param base the height of the view, for carving in graphics orientation
+	 * @param budget how many chunks may be held in memory at once
+	 */
+	public ChunkedTerrain(long seed, int maxHeight, int minHeight, int base, int budget) {
+		if(budget < 1) throw new IllegalArgumentException("Need room for at least one chunk");
+
+		mSeed = seed;
+		mMaxHeight = maxHeight;
+		mMinHeight = minHeight;
+		mBase = base;
+
+		mSlotChunk = new int[budget];
+		mSlotUsed = new long[budget];
+		mSlotHeights = new int[budget][CHUNK_WIDTH];
+		Arrays.fill(mSlotChunk, -1);
+
+		Arrays.fill(mCarveTop, Integer.MAX_VALUE);
+		Arrays.fill(mCarveBottom, Integer.MIN_VALUE);
+
+		mRandom.setSeed(seedFor(-1));
+		Terrain.startWalk(mWalk, mRandom, maxHeight, minHeight);
+		mStarts = new int[16 * Terrain.WALK_STATE];
+		System.arraycopy(mWalk, 0, mStarts, 0, Terrain.WALK_STATE);
+		mStartCount = 1;
+	}
+
+	public int getBase() {
+		return mBase;
+	}
+
+	public int at(int x) {
+		if(x < 0) throw new IllegalArgumentException("Bad index passed");
+		return chunk(x / CHUNK_WIDTH)[x % CHUNK_WIDTH];
+	}
+
+	/**
+	 * Copy length heights starting at column x into out
+	 */
+	public void copy(int x, int[] out, int offset, int length) {
+		if(x < 0) throw new IllegalArgumentException("Bad index passed");
+
+		while(length > 0) {
+			int i = x % CHUNK_WIDTH;
+			int n = Math.min(length, CHUNK_WIDTH - i);
+			System.arraycopy(chunk(x / CHUNK_WIDTH), i, out, offset, n);
+
+			x += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	/**
+	 * Carve a circle out of the world, as Terrain.carveCircle does
+	 */
+	public void carveCircle(int cx, int cy, int radius) {
+		int[] edit = mEdit;
+		edit[0] = EDIT_CIRCLE;
+		edit[1] = cx;
+		edit[2] = cy;
+		edit[3] = radius;
+		record(cx - radius, cx + radius, 4);
+	}
+
+	/**
+	 * Carve several circles out of the world at once, as
+	 * Terrain.carveCircles does. They are logged as one edit, so that when
+	 * a chunk is rebuilt each column loses the same single span as it did
+	 * the first time.
+	 * @param offset added to each x, for circles measured from a window
+	 */
+	public void carveCircles(int[] x, int[] y, int[] radius, int count, int offset) {
+		int length = 2 + 3 * count;
+		if(mEdit.length < length) mEdit = new int[Math.max(length, 2 * mEdit.length)];
+
+		int[] edit = mEdit;
+		edit[0] = EDIT_CIRCLES;
+		edit[1] = count;
+
+		int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+		for(int i = 0; i < count; i++) {
+			edit[2 + 3 * i] = offset + x[i];
+			edit[3 + 3 * i] = y[i];
+			edit[4 + 3 * i] = radius[i];
+			left = Math.min(left, offset + x[i] - radius[i]);
+			right = Math.max(right, offset + x[i] + radius[i]);
+		}
+		record(left, right, length);
+	}
+
+	/**
+	 * Carve along a segment, as Terrain.carveStroke does
+	 */
+	public void carveStroke(int x0, int y0, int x1, int y1, int radius) {
+		int[] edit = mEdit;
+		edit[0] = EDIT_STROKE;
+		edit[1] = x0;
+		edit[2] = y0;
+		edit[3] = x1;
+		edit[4] = y1;
+		edit[5] = radius;
+		record(Math.min(x0, x1) - radius, Math.max(x0, x1) + radius, 6);
+	}
+
+	/**
+	 * Append the first length ints of mEdit to the log of every chunk it
+	 * touches, and apply it straight away to those chunks that are in
+	 * memory.
+	 */
+	private void record(int left, int right, int length) {
+		left = Math.max(0, left);
+		if(right < left) return;
+
+		for(int k = left / CHUNK_WIDTH; k <= right / CHUNK_WIDTH; k++) {
+			int[] log = ensureLog(k, length);
+			int n = mLogLengths[k];
+
+			System.arraycopy(mEdit, 0, log, n, length);
+			mLogLengths[k] = n + length;
+
+			for(int s = 0; s < mSlotChunk.length; s++) {
+				if(mSlotChunk[s] == k) {
+					apply(k, mSlotHeights[s], log, n);
+					break;
+				}
+			}
+		}
+	}
+
+	private int[] ensureLog(int k, int extra) {
+		if(k >= mLogs.length) {
+			int size = Math.max(k + 1, 2 * mLogs.length);
+			mLogs = copyOf(mLogs, size);
+			int[] lengths = new int[size];
+			System.arraycopy(mLogLengths, 0, lengths, 0, mLogLengths.length);
+			mLogLengths = lengths;
+		}
+
+		int[] log = mLogs[k];
+		if(log == null) {
+			log = mLogs[k] = new int[Math.max(16, extra)];
+		}
+		else if(mLogLengths[k] + extra > log.length) {
+			int[] bigger = new int[Math.max(mLogLengths[k] + extra, 2 * log.length)];
+			System.arraycopy(log, 0, bigger, 0, mLogLengths[k]);
+			log = mLogs[k] = bigger;
+		}
+		return log;
+	}
+
+	private static int[][] copyOf(int[][] a, int size) {
+		int[][] b = new int[size][];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	/**
+	 * How many ints the edit at position i of a log takes up
+	 */
+	private static int editLength(int[] log, int i) {
+		switch(log[i]) {
+		case EDIT_CIRCLE: return 4;
+		case EDIT_STROKE: return 6;
+		default: return 2 + 3 * log[i + 1];
+		}
+	}
+
+	/**
+	 * Apply the edit at position i of a log to the heights of chunk k
+	 */
+	private void apply(int k, int[] heights, int[] log, int i) {
+		int offset = k * CHUNK_WIDTH;
+
+		if(log[i] == EDIT_CIRCLE)
+			Terrain.stampCircle(mCarveTop, mCarveBottom, offset, log[i + 1], log[i + 2], log[i + 3]);
+		else if(log[i] == EDIT_STROKE)
+			Terrain.stampStroke(mCarveTop, mCarveBottom, offset, log[i + 1], log[i + 2], log[i + 3], log[i + 4], log[i + 5]);
+		else {
+			for(int j = i + 2; j < i + editLength(log, i); j += 3) {
+				Terrain.stampCircle(mCarveTop, mCarveBottom, offset, log[j], log[j + 1], log[j + 2]);
+			}
+		}
+
+		for(int x = 0; x < CHUNK_WIDTH; x++) {
+			if(mCarveTop[x] > mCarveBottom[x]) continue;
+
+			heights[x] -= Terrain.consumed(heights[x], mBase, mCarveTop[x], mCarveBottom[x]);
+			mCarveTop[x] = Integer.MAX_VALUE;
+			mCarveBottom[x] = Integer.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * Get the heights of chunk k, rebuilding it if it is not in memory
+	 */
+	private int[] chunk(int k) {
+		int slot = 0;
+
+		for(int s = 0; s < mSlotChunk.length; s++) {
+			if(mSlotChunk[s] == k) {
+				mSlotUsed[s] = ++mClock;
+				return mSlotHeights[s];
+			}
+
+			// Empty slots have never been used, so they are picked first
+			if(mSlotUsed[s] < mSlotUsed[slot]) slot = s;
+		}
+
+		int[] heights = mSlotHeights[slot];
+		generate(k, heights);
+
+		int[] log = k < mLogs.length ? mLogs[k] : null;
+		for(int i = 0; log != null && i < mLogLengths[k]; i += editLength(log, i)) {
+			apply(k, heights, log, i);
+		}
+
+		mSlotChunk[slot] = k;
+		mSlotUsed[slot] = ++mClock;
+		return heights;
+	}
+
+	/**
+	 * Run the walk for chunk k from its recorded starting state. The state at
+	 * the start of a chunk we have not reached yet is found by walking every
+	 * chunk before it once; after that it is remembered.
+	 */
+	private void generate(int k, int[] out) {
+		while(mStartCount <= k) {
+			walkChunk(mStartCount - 1, mScratch);
+		}
+		walkChunk(k, out);
+	}
+
+	private void walkChunk(int k, int[] out) {
+		System.arraycopy(mStarts, k * Terrain.WALK_STATE, mWalk, 0, Terrain.WALK_STATE);
+		mRandom.setSeed(seedFor(k));
+		Terrain.walk(out, 0, CHUNK_WIDTH, mWalk, mRandom, mMaxHeight, mMinHeight);
+
+		if(k + 1 == mStartCount) {
+			if(mStarts.length < (k + 2) * Terrain.WALK_STATE) {
+				int[] starts = new int[2 * mStarts.length];
+				System.arraycopy(mStarts, 0, starts, 0, mStarts.length);
+				mStarts = starts;
+			}
+			System.arraycopy(mWalk, 0, mStarts, (k + 1) * Terrain.WALK_STATE, Terrain.WALK_STATE);
+			mStartCount++;
+		}
+	}
+
+	private long seedFor(int k) {
+		return mSeed ^ (k * 0x9E3779B97F4A7C15L);
+	}
+}
@@ -0,0 +1,33 @@
+package org.oep.grenade.world;
+
+public class Cloud {
+	private int mAlpha;
+	private int mX, mY;
+	
+	public Cloud(int x, int y) {
+		mAlpha = 255;
+		mX = x;
+		mY = y;
+	}
+	
+	public void update() {
+		mAlpha = Math.max(0, mAlpha - 10);
+	}
+	
+	public void offset(int dx, int dy) {
+		mX += dx;
+		mY += dy;
+	}
+	
+	public int getAlpha() { 
+		return mAlpha;
+	}
+	
+	public int getX() {
+		return mX;
+	}
+	
+	public int getY() {
+		return mY;
+	}
+}
@@ -0,0 +1,19 @@
+package org.oep.grenade.world;
+
+/**
+ * Where a moving point first touched the terrain, filled in by
+ * Terrain.sweep. Coordinates are in graphics orientation.
+ */
+public class Contact {
+	/** The last legal position before the terrain */
+	public float x, y;
+	
+	/** How far along the swept segment the contact happened, from 0 to 1 */
+	public float time;
+	
+	/** The column that was hit */
+	public int column;
+	
+	/** The unit normal of the surface that was hit */
+	public float nx, ny;
+}
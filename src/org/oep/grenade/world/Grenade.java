@@ -0,0 +1,51 @@
+package org.oep.grenade.world;
+
+/**
+ * A grenade in flight. Each one burns its own fuse, and a cluster grenade
+ * scatters bomblets when it goes off.
+ */
+public class Grenade extends RigidBody {
+	/** How many frames are left until it goes off */
+	private int mFuse;
+
+	/** How big a hole it blows */
+	private int mRadius;
+
+	/** How many bomblets it scatters when it goes off */
+	private int mBomblets;
+
+	/**
+	 * Get the grenade ready to throw
+	 * @param fuse frames until it goes off
+	 * @param radius how big the blast is
+	 * @param bomblets how many bomblets to scatter, or 0 for none
+	 */
+	public void arm(int fuse, int radius, int bomblets) {
+		mFuse = fuse;
+		mRadius = radius;
+		mBomblets = bomblets;
+		setPhysics(true);
+		setPhysicsTimer(0);
+	}
+
+	/**
+	 * Burn one frame of fuse
+	 * @return true if it has gone off
+	 */
+	public boolean tickFuse() {
+		mFuse = Math.max(0, mFuse - 1);
+		return mFuse == 0;
+	}
+
+	public int getFuse() {
+		return mFuse;
+	}
+
+	public int getRadius() {
+		return mRadius;
+	}
+
+	public int getBomblets() {
+		return mBomblets;
+	}
+}
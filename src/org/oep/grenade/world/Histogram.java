@@ -0,0 +1,111 @@
+package org.oep.grenade.world;
+
+/**
+ * Counts how often durations fall in each of a fixed set of buckets, so
+ * percentiles can be read off without keeping every sample. Below 8
+ * microseconds each microsecond has its own bucket; above that each
+ * doubling is split into 8, so any value is known to within an eighth.
+ * Recording is a few shifts and an increment, and never allocates.
+ */
+public class Histogram {
+	/** How many buckets each doubling is split into, as a power of two */
+	private static final int SUB_BITS = 3;
+	private static final int SUB = 1 << SUB_BITS;
+
+	/** Anything longer than about a minute goes in the last bucket */
+	private static final int MAX_EXPONENT = 25;
+
+	public static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB;
+
+	private final int[] mCounts = new int[BUCKETS];
+	private int mCount;
+	private long mMax;
+	private long mTotal;
+
+	/**
+	 * @param micros how long something took
+	 */
+	public void record(long micros) {
+		if(micros < 0) micros = 0;
+
+		mCounts[bucket(micros)]++;
+		mCount++;
+		mTotal += micros;
+		if(micros > mMax) mMax = micros;
+	}
+
+	/**
+	 * @param p between 0 and 1
+	 * @return the least time that at least that share of the samples took
+	 *         no longer than, to within a bucket, or 0 if there are none
+	 */
+	public long getPercentile(float p) {
+		if(mCount == 0) return 0;
+
+		// The rank of the sample we want, counting from 1
+		int rank = Math.max(1, (int) Math.ceil(p * mCount));
+		int seen = 0;
+
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += mCounts[i];
+			if(seen >= rank) return Math.min(mMax, getBucketTop(i));
+		}
+		return mMax;
+	}
+
+	public int getCount() {
+		return mCount;
+	}
+
+	public long getMax() {
+		return mMax;
+	}
+
+	public long getMean() {
+		return mCount == 0 ? 0 : mTotal / mCount;
+	}
+
+	public int getBucketCount(int i) {
+		return mCounts[i];
+	}
+
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			mCounts[i] = 0;
+		}
+		mCount = 0;
+		mMax = 0;
+		mTotal = 0;
+	}
+
+	/**
+	 * Which bucket a duration falls in
+	 */
+	static int bucket(long micros) {
+		if(micros < SUB) return (int) micros;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if(exponent > MAX_EXPONENT) return BUCKETS - 1;
+
+		// The top SUB_BITS bits below the leading one pick the sub-bucket
+		int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB - 1);
+		return (exponent - SUB_BITS + 1) * SUB + sub;
+	}
+
+	/**
+	 * The shortest duration that goes in bucket i
+	 */
+	public static long getBucketBottom(int i) {
+		if(i < SUB) return i;
+
+		int exponent = i / SUB + SUB_BITS - 1;
+		return (long) (SUB + i % SUB) << (exponent - SUB_BITS);
+	}
+
+	/**
+	 * The longest duration that goes in bucket i
+	 */
+	public static long getBucketTop(int i) {
+		return i == BUCKETS - 1 ? Long.MAX_VALUE : getBucketBottom(i + 1) - 1;
+	}
+}
@@ -0,0 +1,323 @@
+package org.oep.grenade.world;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Everything needed to play a match again exactly as it went. A match is
+ * decided by its seed, how its terrain was laid out, and what was done to
+ * the world from outside: pulling pins, throwing and sizing bodies. The
+ * world writes each of those in here as it happens, stamped with the step
+ * it happened before, and Replay feeds them back in.
+ *
+ * The commands are packed into a byte array as they come. Each one is an
+ * opcode, the number of steps since the one before as a varint, and its
+ * arguments, so a whole match is usually a few hundred bytes.
+ */
+public class MatchLog {
+	/** Terrain kinds */
+	public static final int HILLS = 0;
+	public static final int CAVES = 1;
+
+	/** What setSize commands can size, besides World.TURN_RED and TURN_BLUE */
+	public static final int GRENADE = 2;
+
+	/** Opcodes */
+	static final int FUSE = 1;
+	static final int THROW = 2;
+	static final int THROW_CLUSTER = 3;
+	static final int SIZE = 4;
+	static final int END = 5;
+
+	private static final int MAGIC = 0x47524e44;
+	private static final int VERSION = 1;
+
+	private final long mSeed;
+	private final int mTerrainKind;
+	private final int mWidth, mMaxHeight, mMinHeight, mBase;
+
+	private byte[] mBytes;
+	private int mLength;
+
+	/** The step the last command was stamped with */
+	private int mLastStep;
+
+	private boolean mFinished;
+
+	/**
+	 * Start a log for a new match
+	 * @param seed where all of the match's randomness comes from
+	 * @param terrainKind HILLS or CAVES
+	 */
+	public MatchLog(long seed, int terrainKind, int width, int maxHeight,
+			int minHeight, int base) {
+		if(terrainKind != HILLS && terrainKind != CAVES) throw new IllegalArgumentException("No such terrain: " + terrainKind);
+
+		mSeed = seed;
+		mTerrainKind = terrainKind;
+		mWidth = width;
+		mMaxHeight = maxHeight;
+		mMinHeight = minHeight;
+		mBase = base;
+		mBytes = new byte[256];
+	}
+
+	/**
+	 * Build the world the match is played in. Every call gives an
+	 * identical world, but nothing it does is logged until it is given
+	 * this log with World.setLog.
+	 */
+	public World newWorld() {
+		// One stream for the terrain and another for the game, so changing
+		// how one uses its randomness doesn't shift the other
+		Random seeds = new Random(mSeed);
+		long terrainSeed = seeds.nextLong();
+		long worldSeed = seeds.nextLong();
+
+		Terrain terrain;
+		if(mTerrainKind == CAVES) {
+			terrain = new CaveTerrain(mWidth, mMaxHeight, mMinHeight, mBase, new Random(terrainSeed));
+		}
+		else {
+			ChunkedTerrain world = new ChunkedTerrain(terrainSeed, mMaxHeight, mMinHeight, mBase);
+			terrain = new Terrain(world, 0, mWidth);
+		}
+
+		return new World(terrain, new Random(worldSeed));
+	}
+
+	public long getSeed() {
+		return mSeed;
+	}
+
+	/**
+	 * Has the end of the match been written?
+	 */
+	public boolean isFinished() {
+		return mFinished;
+	}
+
+	/**
+	 * How many bytes of commands there are
+	 */
+	public int getLength() {
+		return mLength;
+	}
+
+	void fuse(int step) {
+		command(FUSE, step);
+	}
+
+	void throwGrenade(int step, float x, float y, float vx, float vy, boolean cluster) {
+		command(cluster ? THROW_CLUSTER : THROW, step);
+		putInt(Float.floatToIntBits(x));
+		putInt(Float.floatToIntBits(y));
+		putInt(Float.floatToIntBits(vx));
+		putInt(Float.floatToIntBits(vy));
+	}
+
+	void setSize(int step, int body, int width, int height) {
+		if(width < 0 || height < 0) throw new IllegalArgumentException("Bad size " + width + "x" + height);
+
+		command(SIZE, step);
+		putByte(body);
+		putVarint(width);
+		putVarint(height);
+	}
+
+	/**
+	 * Write the end of the match, with a checksum of how the world ended
+	 * up so a replay can tell whether it went the same way. Nothing more
+	 * can be logged after this.
+	 */
+	public void finish(World world) {
+		command(END, world.getStepCount());
+		putInt(checksum(world));
+		mFinished = true;
+	}
+
+	private void command(int opcode, int step) {
+		if(mFinished) throw new IllegalStateException("The match is over");
+		if(step < mLastStep) throw new IllegalArgumentException("Step " + step + " is before step " + mLastStep);
+
+		putByte(opcode);
+		putVarint(step - mLastStep);
+		mLastStep = step;
+	}
+
+	/**
+	 * Sum up the parts of a world that show whether a match has gone
+	 * differently: the step, whose turn it is, where the players are and
+	 * how they are, and the shape of the ground
+	 */
+	public static int checksum(World world) {
+		int sum = world.getStepCount();
+		sum = 31 * sum + world.getCurrentTurn();
+		sum = 31 * sum + checksum(world.getRedPlayer());
+		sum = 31 * sum + checksum(world.getBluePlayer());
+
+		Terrain terrain = world.getTerrain();
+		for(int x = 0; x < terrain.getWidth(); x++) {
+			sum = 31 * sum + terrain.absAt(x);
+		}
+		return sum;
+	}
+
+	private static int checksum(Player player) {
+		int sum = Float.floatToIntBits(player.getX());
+		sum = 31 * sum + Float.floatToIntBits(player.getY());
+		sum = 31 * sum + player.getHealth();
+		return 31 * sum + (player.isDead() ? 1 : 0);
+	}
+
+	/**
+	 * Save the whole log
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		data.writeLong(mSeed);
+		data.writeByte(mTerrainKind);
+		data.writeInt(mWidth);
+		data.writeInt(mMaxHeight);
+		data.writeInt(mMinHeight);
+		data.writeInt(mBase);
+		data.writeInt(mLength);
+		data.write(mBytes, 0, mLength);
+		data.flush();
+	}
+
+	/**
+	 * Load a log saved with write
+	 */
+	public static MatchLog read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if(data.readInt() != MAGIC) throw new IOException("Not a match log");
+
+		int version = data.readUnsignedByte();
+		if(version != VERSION) throw new IOException("Can't read version " + version + " match logs");
+
+		long seed = data.readLong();
+		int kind = data.readUnsignedByte();
+		if(kind != HILLS && kind != CAVES) throw new IOException("No such terrain: " + kind);
+
+		MatchLog log = new MatchLog(seed, kind, data.readInt(), data.readInt(),
+				data.readInt(), data.readInt());
+
+		int length = data.readInt();
+		if(length < 0) throw new IOException("Bad length " + length);
+
+		log.mBytes = new byte[Math.max(1, length)];
+		data.readFully(log.mBytes, 0, length);
+		log.mLength = length;
+
+		// Work out where it got to, so reading a log back is the same as
+		// having written it
+		Cursor c = log.new Cursor();
+		while(c.next()) {
+			if(c.opcode == END) log.mFinished = true;
+		}
+		log.mLastStep = c.step;
+		return log;
+	}
+
+	/**
+	 * Reads the commands back in order. After each call to next, the
+	 * fields hold the command that was read.
+	 */
+	class Cursor {
+		private int mPosition;
+
+		int opcode, step;
+		float x, y, vx, vy;
+		int body, width, height, checksum;
+
+		/**
+		 * @return false if there are no more commands
+		 */
+		boolean next() {
+			if(mPosition == mLength) return false;
+
+			opcode = getByte();
+			step += getVarint();
+
+			switch(opcode) {
+			case FUSE:
+				break;
+
+			case THROW:
+			case THROW_CLUSTER:
+				x = Float.intBitsToFloat(getInt());
+				y = Float.intBitsToFloat(getInt());
+				vx = Float.intBitsToFloat(getInt());
+				vy = Float.intBitsToFloat(getInt());
+				break;
+
+			case SIZE:
+				body = getByte();
+				width = getVarint();
+				height = getVarint();
+				break;
+
+			case END:
+				checksum = getInt();
+				break;
+
+			default:
+				throw new IllegalStateException("Bad opcode " + opcode + " at byte " + (mPosition - 1));
+			}
+			return true;
+		}
+
+		private int getByte() {
+			if(mPosition == mLength) throw new IllegalStateException("The log ends in the middle of a command");
+			return mBytes[mPosition++] & 0xff;
+		}
+
+		private int getInt() {
+			return getByte() << 24 | getByte() << 16 | getByte() << 8 | getByte();
+		}
+
+		private int getVarint() {
+			int value = 0;
+			for(int shift = 0; ; shift += 7) {
+				int b = getByte();
+				value |= (b & 0x7f) << shift;
+				if(b < 0x80) return value;
+			}
+		}
+	}
+
+	private void putByte(int b) {
+		if(mLength == mBytes.length) {
+			byte[] bigger = new byte[2 * mBytes.length];
+			System.arraycopy(mBytes, 0, bigger, 0, mLength);
+			mBytes = bigger;
+		}
+		mBytes[mLength++] = (byte) b;
+	}
+
+	private void putInt(int i) {
+		putByte(i >>> 24);
+		putByte(i >>> 16);
+		putByte(i >>> 8);
+		putByte(i);
+	}
+
+	/**
+	 * Write a non-negative int seven bits at a time, low bits first, with
+	 * the top bit of each byte set if more follow
+	 */
+	private void putVarint(int i) {
+		while(i >= 0x80) {
+			putByte(i & 0x7f | 0x80);
+			i >>>= 7;
+		}
+		putByte(i);
+	}
+}
@@ -0,0 +1,244 @@
+package org.oep.grenade.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A computer player. Asked for a throw, it tries thousands of random angles
+ * and powers, flies each one over the terrain with World.moveBody for the
+ * whole fuse, and picks the one expected to hurt its enemy most and itself
+ * least. Each throw is tried a few times with a slightly shaky release, so
+ * a throw that only works if it is perfect doesn't win.
+ *
+ * Only the terrain is flown against. The world also bounces a grenade off
+ * the players, which this leaves out, so a throw straight at the enemy is
+ * scored as though it went through them, where in the game it would
+ * bounce back off them.
+ *
+ * The search is split between worker threads, one per core, so the game
+ * thread only starts it and checks back on it each frame. The workers stop
+ * when they have tried everything or the time is up, whichever is first.
+ *
+ * The terrain is shared with the workers and must not change while they
+ * are searching. The world only changes it when a grenade goes off, and
+ * there is no grenade while someone is deciding how to throw one.
+ */
+public class Opponent {
+	/** How many throws to try, if there is time */
+	public static final int CANDIDATES = 4096;
+
+	/** How many shaky releases each throw is tried with */
+	public static final int SAMPLES = 4;
+
+	/** How far off a release can be, as a fraction of the power and in radians */
+	public static final float SHAKE = 0.03f;
+
+	private final ExecutorService mPool;
+	private final int mThreads;
+	private final float mMaxPower;
+
+	private final List<Future<Candidate>> mWorkers = new ArrayList<Future<Candidate>>();
+
+	/**
+	 * Goes up every time a search is started or cancelled, so workers from
+	 * an old search know to stop
+	 */
+	private volatile int mGeneration;
+
+	/**
+	 * @param maxPower the fastest the opponent can throw
+	 */
+	public Opponent(float maxPower) {
+		mMaxPower = maxPower;
+		mThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+		mPool = Executors.newFixedThreadPool(mThreads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				// Let the game thread have the core if there is only one
+				Thread t = new Thread(r, "Opponent");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Start working out a throw for one player at another. Call poll to
+	 * find out when it is ready. Anything already going is cancelled.
+	 * @param terrain what to throw over
+	 * @param self who is throwing
+	 * @param enemy who to throw at
+	 * @param random where the workers get their random numbers from
+	 * @param budget how long the search can take, in milliseconds
+	 */
+	public void start(Terrain terrain, Player self, Player enemy, Random random, long budget) {
+		cancel();
+
+		long deadline = System.nanoTime() + budget * 1000000;
+		int share = (CANDIDATES + mThreads - 1) / mThreads;
+		for(int i = 0; i < mThreads; i++) {
+			Search search = new Search(terrain, self, enemy, share, deadline, random.nextLong());
+			mWorkers.add(mPool.submit(search));
+		}
+	}
+
+	public boolean isSearching() {
+		return !mWorkers.isEmpty();
+	}
+
+	/**
+	 * See whether the search is done, without waiting for it
+	 * @param out receives the velocity to throw with once it is
+	 * @return true if the search is over and out has been filled in
+	 */
+	public boolean poll(Vector2D out) {
+		if(mWorkers.isEmpty()) return false;
+
+		for(int i = 0; i < mWorkers.size(); i++) {
+			if(!mWorkers.get(i).isDone()) return false;
+		}
+
+		Candidate best = null;
+		for(int i = 0; i < mWorkers.size(); i++) {
+			Candidate c = result(mWorkers.get(i));
+			if(best == null || c.score > best.score) best = c;
+		}
+		mWorkers.clear();
+
+		out.x = best.vx;
+		out.y = best.vy;
+		return true;
+	}
+
+	private static Candidate result(Future<Candidate> future) {
+		try {
+			return future.get();
+		}
+		catch(InterruptedException e) {
+			throw new IllegalStateException("Interrupted collecting a finished search");
+		}
+		catch(ExecutionException e) {
+			throw new IllegalStateException("Search failed: " + e.getCause());
+		}
+	}
+
+	/**
+	 * Stop searching and forget about it
+	 */
+	public void cancel() {
+		mGeneration++;
+		for(int i = 0; i < mWorkers.size(); i++) {
+			mWorkers.get(i).cancel(false);
+		}
+		mWorkers.clear();
+	}
+
+	/**
+	 * Stop searching and let the worker threads go for good
+	 */
+	public void shutdown() {
+		cancel();
+		mPool.shutdownNow();
+	}
+
+	/** The best throw one worker found */
+	private static class Candidate {
+		float vx, vy;
+		float score = -Float.MAX_VALUE;
+	}
+
+	/**
+	 * One worker's share of the search. Every worker has its own copy of
+	 * where everyone is, its own grenade and its own scratch space, so the
+	 * only thing they share is the terrain, which they only read.
+	 */
+	private class Search implements Callable<Candidate> {
+		private final Terrain mTerrain;
+		private final float mFromX, mFromY;
+		private final float mSelfX, mSelfY;
+		private final float mEnemyX, mEnemyY;
+
+		private final int mCount;
+		private final long mDeadline;
+		private final int mSearch;
+		private final Random mRandom;
+
+		private final RigidBody mGrenade = new RigidBody();
+		private final Contact mContact = new Contact();
+		private final Vector2D mWarp = new Vector2D(0, 0);
+
+		Search(Terrain terrain, Player self, Player enemy, int count, long deadline, long seed) {
+			mTerrain = terrain;
+			mSelfX = self.getX();
+			mSelfY = self.getY();
+			mFromX = mSelfX;
+			mFromY = mSelfY - World.THROW_HEIGHT;
+			mEnemyX = enemy.getX();
+			mEnemyY = enemy.getY();
+
+			mCount = count;
+			mDeadline = deadline;
+			mSearch = mGeneration;
+			mRandom = new Random(seed);
+		}
+
+		public Candidate call() {
+			Candidate best = new Candidate();
+
+			for(int i = 0; i < mCount; i++) {
+				// Always try at least one, so there is something to throw
+				if(i > 0 && (mSearch != mGeneration || System.nanoTime() - mDeadline > 0)) break;
+
+				// Anywhere from flat along the ground one way, over the top,
+				// to flat the other way
+				float angle = (float) (-Math.PI * mRandom.nextFloat());
+				float power = mMaxPower * mRandom.nextFloat();
+
+				float score = 0;
+				for(int s = 0; s < SAMPLES; s++) {
+					float a = angle + SHAKE * (float) mRandom.nextGaussian();
+					float p = power * (1 + SHAKE * (float) mRandom.nextGaussian());
+					score += fly((float) Math.cos(a) * p, (float) Math.sin(a) * p);
+				}
+				score /= SAMPLES;
+
+				if(score > best.score) {
+					best.score = score;
+					best.vx = (float) Math.cos(angle) * power;
+					best.vy = (float) Math.sin(angle) * power;
+				}
+			}
+
+			return best;
+		}
+
+		/**
+		 * Throw the grenade and let it go off. It bounces off the terrain
+		 * but flies through the players.
+		 * @return the damage it does to the enemy, less what it does to us
+		 */
+		private float fly(float vx, float vy) {
+			RigidBody g = mGrenade;
+			World.releaseGrenade(g, mFromX, mFromY, vx, vy);
+
+			for(int step = 0; step < World.GRENADE_FUSE; step++) {
+				World.moveBody(mTerrain, g, mContact, mWarp);
+			}
+
+			return World.blastDamage(distance(g, mEnemyX, mEnemyY))
+					- World.blastDamage(distance(g, mSelfX, mSelfY));
+		}
+	}
+
+	private static double distance(RigidBody body, float x, float y) {
+		float dx = body.getX() - x, dy = body.getY() - y;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+}
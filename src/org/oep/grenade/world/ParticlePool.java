@@ -0,0 +1,310 @@
+package org.oep.grenade.world;
+
+import java.util.Arrays;
+
+/**
+ * A fixed number of small bodies, like giblets, kept as plain arrays rather
+ * than as RigidBody objects. Particles live in a ring in the order they were
+ * made, so when the pool is full the oldest one is recycled. A particle dies
+ * when its lifetime runs out, or earlier if it is recycled.
+ *
+ * A particle that has barely moved for a while goes to sleep and is left out
+ * of step until wake is called on its columns, so lying still costs
+ * nothing.
+ *
+ * Positions are in graphics orientation, as with RigidBody.
+ */
+public class ParticlePool {
+	private final int mCapacity;
+
+	private final float[] mX, mY;
+	private final float[] mPreviousX, mPreviousY;
+	private final float[] mVX, mVY;
+	private final float[] mElasticity, mFriction;
+	private final int[] mSprite;
+
+	/** The step each particle dies on */
+	private final int[] mDeath;
+
+	/** How many steps in a row each particle has barely moved */
+	private final int[] mStill;
+
+	/** The slots of the particles that are awake, in no particular order */
+	private final int[] mActive;
+	private int mActiveCount;
+
+	/** Where each slot is in mActive, or -1 if it is asleep or dead */
+	private final int[] mActiveIndex;
+
+	/** The oldest particle, and how many slots from there are in use */
+	private int mHead, mCount;
+
+	/** How many steps we have taken */
+	private int mClock;
+
+	/** Scratch space for bouncing a particle */
+	private final Vector2D mVelocity = new Vector2D(0, 0);
+	private final Vector2D mNormal = new Vector2D(0, 0);
+
+	public ParticlePool(int capacity) {
+		if(capacity < 1) throw new IllegalArgumentException("Need room for at least one particle");
+
+		mCapacity = capacity;
+		mX = new float[capacity];
+		mY = new float[capacity];
+		mPreviousX = new float[capacity];
+		mPreviousY = new float[capacity];
+		mVX = new float[capacity];
+		mVY = new float[capacity];
+		mElasticity = new float[capacity];
+		mFriction = new float[capacity];
+		mSprite = new int[capacity];
+		mDeath = new int[capacity];
+		mStill = new int[capacity];
+		mActive = new int[capacity];
+		mActiveIndex = new int[capacity];
+		Arrays.fill(mActiveIndex, -1);
+	}
+
+	/**
+	 * Make a new particle, recycling the oldest one if the pool is full
+	 * @param sprite an index into the sprites passed to draw
+	 * @param life how many steps the particle lasts
+	 * @return the slot of the new particle
+	 */
+	public int spawn(float x, float y, float vx, float vy, float elasticity, float friction, int sprite, int life) {
+		int i;
+		if(mCount == mCapacity) {
+			i = mHead;
+			mHead = (mHead + 1) % mCapacity;
+			deactivate(i);
+		}
+		else {
+			i = (mHead + mCount) % mCapacity;
+			mCount++;
+		}
+
+		mX[i] = mPreviousX[i] = x;
+		mY[i] = mPreviousY[i] = y;
+		mVX[i] = vx;
+		mVY[i] = vy;
+		mElasticity[i] = Math.max(0, Math.min(1, elasticity));
+		mFriction[i] = Math.max(0, Math.min(1, friction));
+		mSprite[i] = sprite;
+		mDeath[i] = mClock + Math.max(1, life);
+		mStill[i] = 0;
+		activate(i);
+		return i;
+	}
+
+	private void activate(int i) {
+		if(mActiveIndex[i] >= 0) return;
+
+		mActiveIndex[i] = mActiveCount;
+		mActive[mActiveCount++] = i;
+	}
+
+	private void deactivate(int i) {
+		int a = mActiveIndex[i];
+		if(a < 0) return;
+
+		// Fill the gap with the last active slot
+		int last = mActive[--mActiveCount];
+		mActive[a] = last;
+		mActiveIndex[last] = a;
+		mActiveIndex[i] = -1;
+	}
+
+	/**
+	 * Wake every sleeping particle between columns left and right, because
+	 * something there has changed
+	 */
+	public void wake(int left, int right) {
+		for(int n = 0, i = mHead; n < mCount; n++) {
+			if(mActiveIndex[i] < 0 && isAlive(i) && mX[i] >= left && mX[i] < right + 1) {
+				mStill[i] = 0;
+				activate(i);
+			}
+
+			if(++i == mCapacity) i = 0;
+		}
+	}
+
+	public float getX(int i) {
+		return mX[i];
+	}
+
+	public float getY(int i) {
+		return mY[i];
+	}
+
+	public float getVX(int i) {
+		return mVX[i];
+	}
+
+	public float getVY(int i) {
+		return mVY[i];
+	}
+
+	public float getElasticity(int i) {
+		return mElasticity[i];
+	}
+
+	/**
+	 * Is the particle in slot i alive and moving?
+	 */
+	public boolean isAwake(int i) {
+		return mActiveIndex[i] >= 0;
+	}
+
+	public void setVelocity(int i, float vx, float vy) {
+		mVX[i] = vx;
+		mVY[i] = vy;
+		mStill[i] = 0;
+		activate(i);
+	}
+
+	/**
+	 * How many particles are alive, or were until they were recycled
+	 */
+	public int size() {
+		return mCount;
+	}
+
+	/**
+	 * How many particles are awake
+	 */
+	public int activeSize() {
+		return mActiveCount;
+	}
+
+	public void clear() {
+		mHead = mCount = 0;
+
+		while(mActiveCount > 0) {
+			mActiveIndex[mActive[--mActiveCount]] = -1;
+		}
+	}
+
+	/**
+	 * Move every particle that is awake through one step, bouncing them off
+	 * the terrain the same way World.moveBody does for rigid bodies.
+	 * @param terrain
+	 * @param ms the length of the step
+	 * @param gravity
+	 * @param contact scratch space for the sweep
+	 * @param warp scratch space for getting out of the terrain
+	 */
+	public void step(Terrain terrain, long ms, float gravity, Contact contact, Vector2D warp) {
+		float dt = ms / 1000f;
+		int base = terrain.getBase();
+		Vector2D velocity = mVelocity, normal = mNormal;
+		mClock++;
+
+		// Go backwards so a particle leaving the active set doesn't skip the
+		// one moved into its place
+		for(int a = mActiveCount - 1; a >= 0; a--) {
+			int i = mActive[a];
+			if(!isAlive(i)) {
+				deactivate(i);
+				continue;
+			}
+
+			float x0 = mX[i], y0 = mY[i];
+			float vx = mVX[i], vy = mVY[i];
+			float e = mElasticity[i], f = mFriction[i];
+			mPreviousX[i] = x0;
+			mPreviousY[i] = y0;
+
+			float x = x0 + dt * vx, y = y0 + dt * vy;
+			vy += gravity;
+
+			float remaining = 1;
+			int bounces = 0;
+			while(terrain.sweep(x0, y0, x, y, contact)) {
+				boolean stuck = contact.time == 0 && terrain.isIllegal(x0, base - y0);
+
+				if(stuck) {
+					// We started out inside the terrain, so just get out
+					terrain.getWarpPoint(x0, y0, warp);
+					x = warp.x;
+					y = warp.y;
+					terrain.getBounceNormal((int) x, (int) y, normal);
+				}
+				else {
+					x = contact.x;
+					y = contact.y;
+					normal.set(contact.nx, contact.ny);
+				}
+
+				velocity.set(vx, vy).reflect(normal.x, normal.y, e, f);
+				vx = velocity.x;
+				vy = velocity.y;
+
+				if(stuck || ++bounces == World.MAX_BOUNCES) break;
+
+				// Spend what is left of the step travelling away from
+				// the contact
+				remaining *= 1 - contact.time;
+				float t = remaining * dt;
+				x0 = x;
+				y0 = y;
+				x = x0 + t * vx;
+				y = y0 + t * vy;
+			}
+
+			mX[i] = x;
+			mY[i] = y;
+			mVX[i] = vx;
+			mVY[i] = vy;
+
+			if(Math.abs(x - mPreviousX[i]) < World.SLEEP_DISTANCE
+					&& Math.abs(y - mPreviousY[i]) < World.SLEEP_DISTANCE) {
+				if(++mStill[i] >= World.SLEEP_FRAMES) {
+					// Settle where it is, so it doesn't jump when it's drawn
+					mPreviousX[i] = x;
+					mPreviousY[i] = y;
+					mVX[i] = mVY[i] = 0;
+					deactivate(i);
+				}
+			}
+			else
+				mStill[i] = 0;
+		}
+
+		// The oldest particles tend to die first, so drop them off the front
+		while(mCount > 0 && !isAlive(mHead)) {
+			deactivate(mHead);
+			mHead = (mHead + 1) % mCapacity;
+			mCount--;
+		}
+	}
+
+	/**
+	 * The slot of the nth oldest particle, for 0 <= n < size()
+	 */
+	public int slot(int n) {
+		return (mHead + n) % mCapacity;
+	}
+
+	public boolean isAlive(int i) {
+		return mDeath[i] - mClock > 0;
+	}
+
+	public int getSprite(int i) {
+		return mSprite[i];
+	}
+
+	/**
+	 * Where particle i is drawn, part of the way from where it was before
+	 * the last step to where it is now
+	 * @param alpha 0 for the old position, 1 for the current one
+	 */
+	public float getDrawX(int i, float alpha) {
+		return mPreviousX[i] + alpha * (mX[i] - mPreviousX[i]);
+	}
+
+	public float getDrawY(int i, float alpha) {
+		return mPreviousY[i] + alpha * (mY[i] - mPreviousY[i]);
+	}
+}
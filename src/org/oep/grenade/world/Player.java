@@ -0,0 +1,40 @@
+package org.oep.grenade.world;
+
+public class Player extends RigidBody {
+	public static final int MAX_HEALTH = 100;
+
+	public static final int GIBLET_CHUNKS = 12;
+	
+	private int mHealth = MAX_HEALTH;
+	private int mAnimationHealth = MAX_HEALTH;
+
+	private boolean mDead = false;
+	
+	/**
+	 * The health shown by the health arc, which drains slowly towards the
+	 * real health
+	 */
+	public int getAnimationHealth() {
+		return mAnimationHealth;
+	}
+	
+	public void takeDamage(int damage) {
+		mHealth = Math.max(0, mHealth - Math.abs(damage)); 
+	}
+	
+	public void nextFrame() {
+		mAnimationHealth = mHealth + (mAnimationHealth - mHealth) * 99 / 100;
+	}
+
+	public int getHealth() {
+		return mHealth;
+	}
+
+	public void setDead(boolean b) {
+		mDead = b;
+	}
+	
+	public boolean isDead() {
+		return mDead;
+	}
+}
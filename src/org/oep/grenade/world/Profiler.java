@@ -0,0 +1,130 @@
+package org.oep.grenade.world;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Times each phase of a frame into its own Histogram, and the whole frame
+ * into another. Timing works in laps: mark starts the clock, and each call
+ * to lap charges the time since the last mark or lap to a phase. That is
+ * one clock read per phase, and nothing is allocated once the phases have
+ * been added.
+ *
+ * A profiler belongs to one thread.
+ */
+public class Profiler {
+	public static final int MAX_PHASES = 16;
+
+	private final String[] mNames = new String[MAX_PHASES];
+	private final Histogram[] mPhases = new Histogram[MAX_PHASES];
+	private int mPhaseCount;
+
+	private final Histogram mFrames = new Histogram();
+
+	private long mFrameStart, mLap;
+
+	/**
+	 * Add a phase to be timed. Adding a name that is already there gives
+	 * the same phase back, so a new World can add its phases again.
+	 * @return the phase's id, for lap
+	 */
+	public int addPhase(String name) {
+		for(int i = 0; i < mPhaseCount; i++) {
+			if(mNames[i].equals(name)) return i;
+		}
+
+		if(mPhaseCount == MAX_PHASES) throw new IllegalStateException("Too many phases");
+
+		mNames[mPhaseCount] = name;
+		mPhases[mPhaseCount] = new Histogram();
+		return mPhaseCount++;
+	}
+
+	public void startFrame() {
+		mFrameStart = mLap = System.nanoTime();
+	}
+
+	public void endFrame() {
+		mFrames.record((System.nanoTime() - mFrameStart) / 1000);
+	}
+
+	/**
+	 * Start timing the next phase from now
+	 */
+	public void mark() {
+		mLap = System.nanoTime();
+	}
+
+	/**
+	 * Charge the time since the last mark or lap to a phase
+	 */
+	public void lap(int phase) {
+		long now = System.nanoTime();
+		mPhases[phase].record((now - mLap) / 1000);
+		mLap = now;
+	}
+
+	public Histogram getFrames() {
+		return mFrames;
+	}
+
+	public int getPhaseCount() {
+		return mPhaseCount;
+	}
+
+	public String getPhaseName(int phase) {
+		return mNames[phase];
+	}
+
+	public Histogram getPhase(int phase) {
+		return mPhases[phase];
+	}
+
+	public void reset() {
+		mFrames.reset();
+		for(int i = 0; i < mPhaseCount; i++) {
+			mPhases[i].reset();
+		}
+	}
+
+	/**
+	 * Write out a summary of every phase in microseconds, followed by the
+	 * non-empty buckets of each histogram
+	 */
+	public void write(Writer out) {
+		PrintWriter w = new PrintWriter(out);
+
+		w.println(String.format("%-12s %8s %8s %8s %8s %8s %8s",
+				"phase", "count", "mean", "p50", "p95", "p99", "max"));
+		summarise(w, "frame", mFrames);
+		for(int i = 0; i < mPhaseCount; i++) {
+			summarise(w, mNames[i], mPhases[i]);
+		}
+
+		w.println();
+		w.println(String.format("%-12s %10s %10s %8s", "phase", "from", "to", "count"));
+		buckets(w, "frame", mFrames);
+		for(int i = 0; i < mPhaseCount; i++) {
+			buckets(w, mNames[i], mPhases[i]);
+		}
+
+		w.flush();
+	}
+
+	private static void summarise(PrintWriter w, String name, Histogram h) {
+		w.println(String.format("%-12s %8d %8d %8d %8d %8d %8d", name,
+				h.getCount(), h.getMean(), h.getPercentile(0.5f),
+				h.getPercentile(0.95f), h.getPercentile(0.99f), h.getMax()));
+	}
+
+	private static void buckets(PrintWriter w, String name, Histogram h) {
+		for(int i = 0; i < Histogram.BUCKETS; i++) {
+			int count = h.getBucketCount(i);
+			if(count == 0) continue;
+
+			long top = Histogram.getBucketTop(i);
+			w.println(String.format("%-12s %10d %10s %8d", name, Histogram.getBucketBottom(i),
+					top == Long.MAX_VALUE ? "-" : Long.toString(top), count));
+		}
+	}
+}
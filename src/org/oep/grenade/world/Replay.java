@@ -0,0 +1,107 @@
+package org.oep.grenade.world;
+
+/**
+ * Plays a match back from its log, without drawing and as fast as it will
+ * go. Each step, the commands stamped for that step are fed to the world
+ * first, just as the game fed them in between steps when it was played.
+ */
+public class Replay {
+	/**
+	 * How long to keep going past the last command of a log that was never
+	 * finished, for everything to settle, in steps
+	 */
+	public static final int SETTLE_LIMIT = 60 * World.FRAMES_PER_SECOND;
+
+	private final World mWorld;
+	private final MatchLog.Cursor mCursor;
+
+	/** Is the command the cursor is on still to be used? */
+	private boolean mPending;
+
+	/** Is there nothing more to play? */
+	private boolean mDone;
+
+	/** The checksum the log ended with, if it was finished */
+	private boolean mEnded;
+	private int mExpected;
+
+	private int mSettleSteps;
+
+	public Replay(MatchLog log) {
+		mWorld = log.newWorld();
+		mCursor = log.new Cursor();
+		mPending = mCursor.next();
+	}
+
+	public World getWorld() {
+		return mWorld;
+	}
+
+	/**
+	 * Play one step
+	 * @return false once the match is over
+	 */
+	public boolean step() {
+		if (mDone)
+			return false;
+
+		int now = mWorld.getStepCount();
+		while (mPending && mCursor.step == now) {
+			if (mCursor.opcode == MatchLog.END) {
+				mEnded = true;
+				mExpected = mCursor.checksum;
+				mDone = true;
+				return false;
+			}
+
+			apply(mCursor);
+			mPending = mCursor.next();
+		}
+
+		if (!mPending && (mWorld.isSettled() || ++mSettleSteps > SETTLE_LIMIT)) {
+			mDone = true;
+			return false;
+		}
+
+		mWorld.step();
+		return true;
+	}
+
+	/**
+	 * Play the whole match
+	 * @return how many steps it took
+	 */
+	public int run() {
+		while (step()) {
+		}
+		return mWorld.getStepCount();
+	}
+
+	/**
+	 * Did the match end the way the log says it did? Only a finished log
+	 * knows how it ended, so this is false for any other.
+	 */
+	public boolean matches() {
+		return mDone && mEnded && MatchLog.checksum(mWorld) == mExpected;
+	}
+
+	private void apply(MatchLog.Cursor c) {
+		switch (c.opcode) {
+		case MatchLog.FUSE:
+			mWorld.startFuse();
+			break;
+
+		case MatchLog.THROW:
+		case MatchLog.THROW_CLUSTER:
+			mWorld.throwGrenade(c.x, c.y, c.vx, c.vy, c.opcode == MatchLog.THROW_CLUSTER);
+			break;
+
+		case MatchLog.SIZE:
+			if (c.body == MatchLog.GRENADE)
+				mWorld.setGrenadeSize(c.width, c.height);
+			else
+				mWorld.setPlayerSize(c.body, c.width, c.height);
+			break;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package org.oep.grenade.world;
+
+/**
+ * Something that moves, falls and bounces. Its position is the middle of
+ * its bottom edge, in graphics orientation.
+ */
+public class RigidBody {
+	/** The size of the body, which is the size of whatever it is drawn as */
+	protected int mWidth, mHeight;
+	
+	protected Vector2D mPosition = new Vector2D(0,0);
+	
+	/** Where the body was before the last step, for drawing in between */
+	protected Vector2D mPrevious = new Vector2D(0,0);
+	
+	protected Vector2D mVelocity = new Vector2D(0,0);
+	
+	private float mGravity;
+	
+	protected boolean mPhysics = true;
+	private boolean mTimedPhysics = false;
+	private int mPhysicsTimer = 0;
+	
+	/** How many steps in a row the body has been moving slowly */
+	private int mStillSteps = 0;
+
+	private float mElasticity = 1;
+
+	private float mFriction = 1;
+	
+	/** Scratch space for the normal to bounce off */
+	private final Vector2D mNormal = new Vector2D(0, 0);
+	
+	public RigidBody() { }
+	
+	/**
+	 * Bounce off the terrain at (x, y), in graphics orientation, or off the
+	 * wall if that is what is there
+	 */
+	public void bounce(Terrain terrain, int x, int y) {
+		Vector2D normal = terrain.getBounceNormal(x, y, mNormal);
+		bounceNormal(normal.x, normal.y);
+	}
+	
+	/**
+	 * Bounce off a surface with the given unit normal. This is the same as
+	 * bounce(tx, ty) with the tangent already normalised.
+	 * @param nx
+	 * @param ny
+	 */
+	public void bounceNormal(float nx, float ny) {
+		if(!mPhysics) return;
+		
+		mVelocity.reflect(nx, ny, mElasticity, mFriction);
+	}
+	
+	/**
+	 * Bounce off a surface running along the tangent (tx, ty), which
+	 * needn't be a unit vector
+	 */
+	public void bounce(float tx, float ty) {
+		if(!mPhysics) return;
+		
+		float magnitude = (float) Math.sqrt(tx * tx + ty * ty);
+		if(magnitude == 0) return;
+		
+		// The normal is the tangent turned a quarter clockwise
+		bounceNormal(ty / magnitude, -tx / magnitude);
+	}
+	
+	public void setSize(int width, int height) {
+		mWidth = width;
+		mHeight = height;
+	}
+	
+	public int getWidth() {
+		return mWidth;
+	}
+	
+	public int getHeight() {
+		return mHeight;
+	}
+	
+	public void savePosition() {
+		mPrevious.x = mPosition.x;
+		mPrevious.y = mPosition.y;
+	}
+	
+	/**
+	 * Where the body is drawn, part of the way from where it was before the
+	 * last step to where it is now
+	 * @param alpha 0 for the old position, 1 for the current one
+	 */
+	public float getDrawX(float alpha) {
+		return mPrevious.x + alpha * (mPosition.x - mPrevious.x);
+	}
+	
+	public float getDrawY(float alpha) {
+		return mPrevious.y + alpha * (mPosition.y - mPrevious.y);
+	}
+	
+	public void setPosition(float x, float y) {
+		mPosition.x = x;
+		mPosition.y = y;
+	}
+	
+	/**
+	 * Put the body somewhere without drawing it in between
+	 */
+	public void placeAt(float x, float y) {
+		setPosition(x, y);
+		savePosition();
+	}
+	
+	public void setVelocity(float vx, float vy) {
+		mVelocity.x = vx;
+		mVelocity.y = vy;
+	}
+	
+	public void setGravity(float gravity) {
+		mGravity = gravity;
+	}
+	
+	public float getY() { return mPosition.y; }
+	public float getX() { return mPosition.x; }
+	
+	public String toString() {
+		return "RigidBody: (" + mPosition.x + ", " + mPosition.y + ")";
+	}
+	
+	public void move(long ms) {
+		float dt = ms / 1000f;
+		
+		mPosition.x += dt * mVelocity.x;
+		mPosition.y += dt * mVelocity.y;
+		
+		mVelocity.y += mGravity;
+	}
+	
+	public float getVX() {
+		return mVelocity.x;
+	}
+	
+	public void setPhysics(boolean b) {
+		mPhysics = b;
+		mStillSteps = 0;
+	}
+	
+	/**
+	 * Count this step towards the body coming to rest
+	 * @param distance how far the body may have moved each way since
+	 *        savePosition and still count as still
+	 * @param steps how many steps in a row it has to be that still
+	 * @return true once it has been still for long enough
+	 */
+	public boolean tickStill(float distance, int steps) {
+		if(Math.abs(mPosition.x - mPrevious.x) < distance
+				&& Math.abs(mPosition.y - mPrevious.y) < distance)
+			mStillSteps++;
+		else
+			mStillSteps = 0;
+		
+		return mStillSteps >= steps;
+	}
+	
+	public void setPhysicsTimer(int time) {
+		mPhysicsTimer = time;
+	}
+	
+	public boolean getPhysics() {
+		return mPhysics;
+	}
+	
+	public int getPhysicsTimer() {
+		return mPhysicsTimer;
+	}
+
+	public void setX(float x) {
+		mPosition.x = x;
+	}
+	
+	public void tickPhysics(int dt) {
+		mPhysicsTimer = Math.max(0, mPhysicsTimer + dt);
+	}
+
+	public double distance(RigidBody body) {
+		float dx = body.getX() - mPosition.x, dy = body.getY() - mPosition.y;
+		return Math.sqrt( dx * dx + dy * dy );
+	}
+
+	public void setElasticity(float f) {
+		mElasticity = Math.max(0, Math.min(1, f));
+	}
+	
+	public void setFriction(float f) {
+		mFriction = Math.max(0, Math.min(1, f));
+	}
+	
+	public float getElasticity() {
+		return mElasticity;
+	}
+	
+	public float getFriction() {
+		return mFriction;
+	}
+
+	public float getVY() {
+		return mVelocity.y;
+	}
+
+	public boolean contains(float x, float y) {
+		return x >= getLeft() && x < getLeft() + mWidth
+			&& y >= getTop() && y < getTop() + mHeight;
+	}
+	
+	public Vector2D getVelocity() {
+		return mVelocity;
+	}
+	
+	public int getLeft() {
+		return (int) (mPosition.x - mWidth / 2);
+	}
+	
+	public int getTop() {
+		return (int) (mPosition.y - mHeight);
+	}
+}
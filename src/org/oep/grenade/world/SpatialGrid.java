@@ -0,0 +1,142 @@
+package org.oep.grenade.world;
+
+/**
+ * A uniform grid of square cells over the world, for finding what is near
+ * a point without looking at everything. Things are added by id with a
+ * position, then build sorts them into their cells, and query finds the ids
+ * within a radius of a point by only looking at the cells it overlaps.
+ *
+ * Building is a counting sort into flat arrays, so it costs O(n) and
+ * allocates nothing. Anything outside the world, like a body thrown above
+ * the top of the screen, goes in the nearest cell on the edge.
+ */
+public class SpatialGrid {
+	private final int mCellSize;
+	private final int mColumns, mRows;
+	private final int mCapacity;
+
+	/** What has been added since the last clear, in the order it came */
+	private final int[] mId;
+	private final float[] mX, mY;
+	private final int[] mCell;
+	private int mCount;
+
+	/**
+	 * Where each cell's entries start in mSorted. The entries for cell c
+	 * are mSorted[mCellStart[c]] up to mSorted[mCellStart[c + 1]].
+	 */
+	private final int[] mCellStart;
+
+	/** Indices into mId and friends, sorted by cell */
+	private final int[] mSorted;
+
+	/**
+	 * @param width the width of the world
+	 * @param height the height of the world
+	 * @param cellSize how big each cell is; about the size of the biggest
+	 *        query is best
+	 * @param capacity the most things there can be in the grid at once
+	 */
+	public SpatialGrid(int width, int height, int cellSize, int capacity) {
+		if(cellSize < 1) throw new IllegalArgumentException("Cells must be at least a pixel");
+
+		mCellSize = cellSize;
+		mColumns = Math.max(1, (width + cellSize - 1) / cellSize);
+		mRows = Math.max(1, (height + cellSize - 1) / cellSize);
+		mCapacity = capacity;
+
+		mId = new int[capacity];
+		mX = new float[capacity];
+		mY = new float[capacity];
+		mCell = new int[capacity];
+		mSorted = new int[capacity];
+		mCellStart = new int[mColumns * mRows + 1];
+	}
+
+	public void clear() {
+		mCount = 0;
+	}
+
+	/**
+	 * Add something to be sorted in at the next build
+	 */
+	public void add(int id, float x, float y) {
+		if(mCount == mCapacity) throw new IllegalStateException("Spatial grid is full");
+
+		mId[mCount] = id;
+		mX[mCount] = x;
+		mY[mCount] = y;
+		mCell[mCount] = column(x) + mColumns * row(y);
+		mCount++;
+	}
+
+	/**
+	 * Sort everything added since the last clear into its cell
+	 */
+	public void build() {
+		int[] start = mCellStart;
+		int cells = start.length - 1;
+
+		for(int c = 0; c <= cells; c++) {
+			start[c] = 0;
+		}
+
+		// Count each cell into the slot after it, then add up so every
+		// slot holds where its cell starts
+		for(int i = 0; i < mCount; i++) {
+			start[mCell[i] + 1]++;
+		}
+		for(int c = 0; c < cells; c++) {
+			start[c + 1] += start[c];
+		}
+
+		// Place each entry, using its cell's slot as a cursor. This leaves
+		// every slot holding where the next cell starts, so shift them back
+		// when done.
+		for(int i = 0; i < mCount; i++) {
+			int c = mCell[i];
+			mSorted[start[c]++] = i;
+		}
+		for(int c = cells; c > 0; c--) {
+			start[c] = start[c - 1];
+		}
+		start[0] = 0;
+	}
+
+	/**
+	 * Find everything within radius of (x, y), as of the last build
+	 * @param out receives the ids
+	 * @return how many ids were written, at most out.length
+	 */
+	public int query(float x, float y, float radius, int[] out) {
+		int left = column(x - radius), right = column(x + radius);
+		int top = row(y - radius), bottom = row(y + radius);
+		float r2 = radius * radius;
+		int found = 0;
+
+		for(int row = top; row <= bottom; row++) {
+			for(int col = left; col <= right; col++) {
+				int c = col + mColumns * row;
+
+				for(int s = mCellStart[c]; s < mCellStart[c + 1]; s++) {
+					int i = mSorted[s];
+					float dx = mX[i] - x, dy = mY[i] - y;
+					if(dx * dx + dy * dy > r2) continue;
+
+					if(found == out.length) return found;
+					out[found++] = mId[i];
+				}
+			}
+		}
+
+		return found;
+	}
+
+	private int column(float x) {
+		return Math.max(0, Math.min(mColumns - 1, (int) Math.floor(x / mCellSize)));
+	}
+
+	private int row(float y) {
+		return Math.max(0, Math.min(mRows - 1, (int) Math.floor(y / mCellSize)));
+	}
+}
@@ -0,0 +1,745 @@
+package org.oep.grenade.world;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A heightfield of solid ground, one height per column, measured up from
+ * the bottom of the view. Positions passed in and out are in graphics
+ * orientation unless it says otherwise.
+ *
+ * Drawing is left to whoever is showing the terrain. They can ask which
+ * columns have changed since they last looked, and what each column is
+ * made of.
+ */
+public class Terrain {
+	public static final int MAX_SLOPE = 5;
+	
+	protected int[] mTerrain;
+	
+	/**
+	 * A segment tree over mTerrain. Node 1 covers the whole array and node k
+	 * has children 2k and 2k + 1. Each node keeps the lowest and highest
+	 * height found in its range.
+	 */
+	private int[] mTreeMin, mTreeMax;
+	
+	private int mMinimum, mMaximum;
+	protected int mBase;
+
+	/**
+	 * The unit normal of the surface at each column, as x, y pairs in
+	 * graphics orientation, pointing out of the ground.
+	 */
+	private float[] mNormals;
+
+
+	/** The inclusive range of columns that have changed since clean() */
+	private int mDirtyLeft = Integer.MAX_VALUE, mDirtyRight = Integer.MIN_VALUE;
+	
+	/** Goes up by one every time any of the ground changes */
+	private int mVersion;
+	
+	/**
+	 * The span of each column, in graphics orientation, that the carve in
+	 * progress will remove.
+	 */
+	private int[] mCarveTop, mCarveBottom;
+	
+	/** The streamed world this terrain is a window onto, if any */
+	private ChunkedTerrain mWorld;
+	private int mWorldX;
+	
+	public Terrain(int width, int maxHeight, int minHeight, int base) {
+		this(width, maxHeight, minHeight, base, new Random());
+	}
+	
+	/**
+	 * Make a terrain whose hills are drawn from rng, so the same seed gives
+	 * the same ground
+	 */
+	public Terrain(int width, int maxHeight, int minHeight, int base, Random rng) {
+		mTerrain = new int[width];
+		mBase = base;
+		
+		int[] walk = new int[WALK_STATE];
+		startWalk(walk, rng, maxHeight, minHeight);
+		walk(mTerrain, 0, width, walk, rng, maxHeight, minHeight);
+		
+		init();
+	}
+	
+	/**
+	 * Make a terrain that shows width columns of a streamed world, starting
+	 * at worldX. Anything carved out of it is carved out of the world too.
+	 */
+	public Terrain(ChunkedTerrain world, int worldX, int width) {
+		mTerrain = new int[width];
+		mBase = world.getBase();
+		mWorld = world;
+		mWorldX = worldX;
+		
+		world.copy(worldX, mTerrain, 0, width);
+		
+		init();
+	}
+	
+	private void init() {
+		int width = mTerrain.length;
+		
+		mTreeMin = new int[4 * width];
+		mTreeMax = new int[4 * width];
+		
+		mCarveTop = new int[width];
+		mCarveBottom = new int[width];
+		Arrays.fill(mCarveTop, Integer.MAX_VALUE);
+		Arrays.fill(mCarveBottom, Integer.MIN_VALUE);
+		
+		mNormals = new float[2 * width];
+		
+		if(width > 0) {
+			build(1, 0, width - 1);
+			changed(0, width - 1);
+		}
+	}
+	
+	/** The number of ints in the state of the slope random walk */
+	static final int WALK_STATE = 3;
+	
+	/**
+	 * Pick a starting point for the slope random walk. The state is stored
+	 * as { height, slope, slopeChange }.
+	 */
+	static void startWalk(int[] state, Random rng, int maxHeight, int minHeight) {
+		// Really just a soft boundary for when slopeChange is forced into being -1
+		// viewHeight is the hard boundary for height
+		state[2] = -1 + rng.nextInt(3);
+		state[1] = -MAX_SLOPE + rng.nextInt(2 * MAX_SLOPE + 1);
+		state[0] = minHeight + rng.nextInt(maxHeight - minHeight);
+	}
+	
+	/**
+	 * Continue the slope random walk for length columns, writing the heights
+	 * into out and leaving state ready for the column that follows.
+	 */
+	static void walk(int[] out, int offset, int length, int[] state, Random rng, int maxHeight, int minHeight) {
+		int height = state[0], slope = state[1], slopeChange = state[2];
+		
+		for(int i = offset; i < offset + length; i++) {
+			out[i] = height;
+			
+			height = Math.max(0, height + slope);
+			slope = Math.max(-MAX_SLOPE, Math.min(MAX_SLOPE, slope + slopeChange));
+			
+			if(height >= maxHeight) {
+				slopeChange = -1;
+			}
+			else if(height <= minHeight) {
+				slopeChange = 1;
+			}
+			else
+				slopeChange = -1 + rng.nextInt(3);
+		}
+		
+		state[0] = height;
+		state[1] = slope;
+		state[2] = slopeChange;
+	}
+	
+	/**
+	 * Move the window to show the streamed world from worldX onwards
+	 */
+	public void scrollTo(int worldX) {
+		if(mWorld == null) throw new IllegalStateException("Not a window onto a world");
+		
+		mWorldX = worldX;
+		mWorld.copy(worldX, mTerrain, 0, mTerrain.length);
+		
+		if(mTerrain.length > 0) {
+			update(1, 0, mTerrain.length - 1, 0, mTerrain.length - 1);
+			changed(0, mTerrain.length - 1);
+		}
+	}
+	
+	public int getWorldX() {
+		return mWorldX;
+	}
+	
+	private void build(int node, int lo, int hi) {
+		if(lo == hi) {
+			mTreeMin[node] = mTreeMax[node] = mTerrain[lo];
+			return;
+		}
+		
+		int mid = (lo + hi) >>> 1;
+		build(2 * node, lo, mid);
+		build(2 * node + 1, mid + 1, hi);
+		pull(node);
+	}
+	
+	private void update(int node, int lo, int hi, int i) {
+		if(lo == hi) {
+			mTreeMin[node] = mTreeMax[node] = mTerrain[i];
+			return;
+		}
+		
+		int mid = (lo + hi) >>> 1;
+		if(i <= mid)
+			update(2 * node, lo, mid, i);
+		else
+			update(2 * node + 1, mid + 1, hi, i);
+		pull(node);
+	}
+	
+	/**
+	 * Refresh every node overlapping the inclusive range [l, r] after the
+	 * heights in it have been changed in place.
+	 */
+	private void update(int node, int lo, int hi, int l, int r) {
+		if(r < lo || hi < l) return;
+		
+		if(lo == hi) {
+			mTreeMin[node] = mTreeMax[node] = mTerrain[lo];
+			return;
+		}
+		
+		int mid = (lo + hi) >>> 1;
+		update(2 * node, lo, mid, l, r);
+		update(2 * node + 1, mid + 1, hi, l, r);
+		pull(node);
+	}
+	
+	private void pull(int node) {
+		mTreeMin[node] = Math.min(mTreeMin[2 * node], mTreeMin[2 * node + 1]);
+		mTreeMax[node] = Math.max(mTreeMax[2 * node], mTreeMax[2 * node + 1]);
+	}
+	
+	/**
+	 * Given a height in our local orientation, write the x positions where
+	 * the terrain crosses that height into out. The y coordinate of every
+	 * intersection is the same, mBase - y in graphics orientation.
+	 * 
+	 * Only the parts of the tree that straddle y are visited, so this costs
+	 * O(log n) per intersection rather than a scan of the whole terrain.
+	 * @param y
+	 * @param out
+	 * @return the number of intersections written, at most out.length
+	 */
+	public int getIntersections(int y, int[] out) {
+		if(y < mTreeMin[1] || y >= mTreeMax[1]) return 0;
+		
+		int state = collect(1, 0, mTerrain.length - 1, y, out, y < mTerrain[0] ? 1 : 0);
+		return state >> 1;
+	}
+	
+	/**
+	 * Add the crossings in node's range to out. What the walk has got to is
+	 * passed along as state, so several threads can query at once: the
+	 * number found so far, doubled, plus 1 if the last range visited was
+	 * all above y.
+	 * @return the state after this range
+	 */
+	private int collect(int node, int lo, int hi, int y, int[] out, int state) {
+		int found = state >> 1;
+		if(found >= out.length) return state;
+		
+		boolean allAbove = y < mTreeMin[node];
+		boolean allBelow = y >= mTreeMax[node];
+		
+		if(allAbove || allBelow) {
+			// The whole range is on one side of y, so the only possible
+			// crossing is where it meets the column before it.
+			boolean previous = (state & 1) != 0;
+			if(lo > 0 && previous != allAbove)
+				out[found++] = lo;
+			return 2 * found + (allAbove ? 1 : 0);
+		}
+		
+		int mid = (lo + hi) >>> 1;
+		state = collect(2 * node, lo, mid, y, out, state);
+		return collect(2 * node + 1, mid + 1, hi, y, out, state);
+	}
+	
+	/**
+	 * Find the nearest legal point to a given (presumably illegal) position,
+	 * both in graphics orientation. Columns are searched outward from the
+	 * one nearest (x, y), and the search stops as soon as the horizontal
+	 * distance alone rules out anything closer than what we have.
+	 * @param x
+	 * @param y
+	 * @param out receives the warp point
+	 */
+	public void getWarpPoint(float x, float y, Vector2D out) {
+		int px = (int) x, py = (int) y;
+		int width = mTerrain.length;
+		int boundedX = Math.max(0, Math.min(width - 1, px));
+		int localY = mBase - py;
+		
+		long best = Long.MAX_VALUE;
+		out.x = boundedX;
+		out.y = py;
+		
+		for(int d = 0; (long) d * d < best; d++) {
+			int left = boundedX - d, right = boundedX + d;
+			if(left < 0 && right >= width) break;
+			
+			if(left >= 0) {
+				best = consider(left, px, py, localY, best, out);
+			}
+			if(right < width && d != 0) {
+				best = consider(right, px, py, localY, best, out);
+			}
+		}
+	}
+	
+	private long consider(int x, int px, int py, int localY, long best, Vector2D out) {
+		int qy = mBase - nearestFree(x, localY);
+		long dx = x - px, dy = qy - py;
+		long d = dx * dx + dy * dy;
+		
+		if(d < best) {
+			out.x = x;
+			out.y = qy;
+			return d;
+		}
+		return best;
+	}
+	
+	/**
+	 * The nearest height to y in column x, in our local orientation, that
+	 * is not inside the terrain
+	 */
+	protected int nearestFree(int x, int y) {
+		return Math.max(y, mTerrain[x]);
+	}
+	
+	/**
+	 * Sweep a point from (x0, y0) to (x1, y1), in graphics orientation, and
+	 * find where it first runs into the terrain. Only the columns the
+	 * segment crosses are looked at, so nothing can tunnel through a thin
+	 * ridge between frames. Either side of the terrain counts as a wall.
+	 * 
+	 * If the segment starts inside the terrain the contact is its start,
+	 * at time 0.
+	 * @param out receives the contact
+	 * @return true if the terrain was hit
+	 */
+	public boolean sweep(float x0, float y0, float x1, float y1, Contact out) {
+		int width = mTerrain.length;
+		float dx = x1 - x0, dy = y1 - y0;
+		
+		int c = (int) Math.floor(x0);
+		int last = (int) Math.floor(x1);
+		int step = c < last ? 1 : -1;
+		float t = 0;
+		
+		while(true) {
+			// The point on the segment where it leaves column c
+			float exit = c == last ? 1 : ((step > 0 ? c + 1 : c) - x0) / dx;
+			float ya = y0 + t * dy, yb = y0 + exit * dy;
+			float from = mBase - ya, to = mBase - yb;
+			
+			boolean hit;
+			if(c < 0 || c >= width) {
+				out.y = from;
+				out.nx = -step;
+				out.ny = 0;
+				hit = true;
+			}
+			else {
+				hit = enter(c, from, to, step, out);
+			}
+			
+			if(hit) {
+				out.column = c;
+				
+				if(out.y == from) {
+					// We ran into the side of this column, so stop just
+					// short of it in the one before
+					out.time = t;
+					if(t == 0)
+						out.x = x0;
+					else
+						out.x = step > 0 ? c - SIDE_GAP : c + 1;
+					out.y = ya;
+				}
+				else {
+					out.time = t + (exit - t) * (from - out.y) / (from - to);
+					out.x = x0 + out.time * dx;
+					out.y = mBase - out.y;
+				}
+				return true;
+			}
+			
+			if(c == last) return false;
+			
+			t = exit;
+			c += step;
+		}
+	}
+	
+	/** How far short of a column we stop when we run into its side */
+	private static final float SIDE_GAP = 0.001f;
+	
+	/**
+	 * Find where a path from height from to height to, in our local
+	 * orientation and within column c, first touches solid ground. The
+	 * path is moving across columns in the direction of step.
+	 * @param out receives the height of the contact in y, and the normal
+	 * @return true if there was a contact
+	 */
+	protected boolean enter(int c, float from, float to, int step, Contact out) {
+		int h = mTerrain[c];
+		if(from >= h && to >= h) return false;
+		
+		out.y = from < h ? from : h;
+		out.nx = mNormals[2 * c];
+		out.ny = mNormals[2 * c + 1];
+		return true;
+	}
+	
+	public int getMinimum() {
+		return mMinimum;
+	}
+	
+	public int getMaximum() {
+		return mMaximum;
+	}
+	
+	/**
+	 * Is the point inside the terrain or outside the world? This rounds down
+	 * to the column the same way sweep does, so anything sweep puts in the
+	 * wall past either edge, like x = -0.1, counts as illegal here too.
+	 */
+	public boolean isIllegal(float x, float y) {
+		return isIllegal((int) Math.floor(x), (int) Math.floor(y));
+	}
+	
+	public boolean isIllegal(int x, int y) {
+		return x < 0 || x >= mTerrain.length || y < mTerrain[x];
+	}
+
+	/**
+	 * The height of the ground that something at height y in column x
+	 * would come to rest on. With a plain heightfield that is the surface.
+	 */
+	public int floorAt(int x, int y) {
+		return at(x);
+	}
+
+	public int at(int x) {
+		if(x < 0 || x >= mTerrain.length) throw new IllegalArgumentException("Bad index passed");
+		return mTerrain[x];
+	}
+	
+	public int getWidth() {
+		return mTerrain.length;
+	}
+
+	/**
+	 * The height of the view, which heights are measured up from
+	 */
+	public int getBase() {
+		return mBase;
+	}
+
+	public void offset(int i, int dh) {
+		if(i < 0 || i >= mTerrain.length) throw new IllegalArgumentException("Bad index passed");
+		mTerrain[i] = Math.max(0, mTerrain[i] + dh);
+		update(1, 0, mTerrain.length - 1, i);
+		changed(i, i);
+	}
+	
+	/**
+	 * Blow a circular hole in the terrain. Everything in the circle is
+	 * removed and whatever was above it settles down to fill the gap.
+	 * @param cx center in graphics orientation
+	 * @param cy center in graphics orientation
+	 * @param radius
+	 * @param extent if not null, receives the region that changed as
+	 *        { left, top, right, bottom }, with right and bottom exclusive
+	 * @return true if any terrain was removed
+	 */
+	public boolean carveCircle(int cx, int cy, int radius, int[] extent) {
+		if(mWorld != null) mWorld.carveCircle(mWorldX + cx, cy, radius);
+		
+		stampCircle(mCarveTop, mCarveBottom, 0, cx, cy, radius);
+		return applyCarve(cx - radius, cx + radius, extent);
+	}
+	
+	/**
+	 * Blow several circular holes at once. The bounds, the index, the
+	 * normals and the dirty range are brought up to date once for the lot,
+	 * so this costs about the same as one hole as wide as all of them.
+	 * Like a stroke, each column loses one span covering every circle in
+	 * it, so circles above each other in a column take out what is between
+	 * them too.
+	 * @param x centers in graphics orientation
+	 * @param y centers in graphics orientation
+	 * @param radius the radius of each circle
+	 * @param count how many circles to use from the arrays
+	 * @param extent if not null, receives the region that changed, as for
+	 *        carveCircle
+	 * @return true if any terrain was removed
+	 */
+	public boolean carveCircles(int[] x, int[] y, int[] radius, int count, int[] extent) {
+		if(mWorld != null) mWorld.carveCircles(x, y, radius, count, mWorldX);
+		
+		int from = Integer.MAX_VALUE, to = Integer.MIN_VALUE;
+		
+		for(int i = 0; i < count; i++) {
+			stampCircle(mCarveTop, mCarveBottom, 0, x[i], y[i], radius[i]);
+			from = Math.min(from, x[i] - radius[i]);
+			to = Math.max(to, x[i] + radius[i]);
+		}
+		
+		return applyCarve(from, to, extent);
+	}
+	
+	/**
+	 * Carve out everything within radius of the segment from (x0, y0) to
+	 * (x1, y1), as though a circle had been dragged along it.
+	 * @param extent if not null, receives the region that changed, as for
+	 *        carveCircle
+	 * @return true if any terrain was removed
+	 */
+	public boolean carveStroke(int x0, int y0, int x1, int y1, int radius, int[] extent) {
+		if(mWorld != null) mWorld.carveStroke(mWorldX + x0, y0, mWorldX + x1, y1, radius);
+		
+		stampStroke(mCarveTop, mCarveBottom, 0, x0, y0, x1, y1, radius);
+		return applyCarve(Math.min(x0, x1) - radius, Math.max(x0, x1) + radius, extent);
+	}
+	
+	/**
+	 * Add a circle to the spans in top and bottom, where index 0 is column
+	 * offset. The half-height of each column is walked down from the radius,
+	 * so there is no square root per column.
+	 */
+	static void stampCircle(int[] top, int[] bottom, int offset, int cx, int cy, int radius) {
+		int r2 = radius * radius;
+		int h = radius;
+		
+		for(int dx = 0; dx <= radius; dx++) {
+			while(h > 0 && h * h > r2 - dx * dx) h--;
+			
+			stampColumn(top, bottom, cx - dx - offset, cy - h, cy + h);
+			if(dx != 0) stampColumn(top, bottom, cx + dx - offset, cy - h, cy + h);
+		}
+	}
+	
+	static void stampStroke(int[] top, int[] bottom, int offset, int x0, int y0, int x1, int y1, int radius) {
+		int dx = x1 - x0, dy = y1 - y0;
+		
+		// Circles a quarter radius apart stay within a pixel of the true
+		// outline for any blast we are likely to see.
+		int steps = (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) / Math.max(1, radius / 4));
+		for(int i = 0; i <= steps; i++) {
+			stampCircle(top, bottom, offset, x0 + (steps == 0 ? 0 : dx * i / steps),
+					y0 + (steps == 0 ? 0 : dy * i / steps), radius);
+		}
+	}
+	
+	private static void stampColumn(int[] top, int[] bottom, int i, int y0, int y1) {
+		if(i < 0 || i >= top.length) return;
+		
+		top[i] = Math.min(top[i], y0);
+		bottom[i] = Math.max(bottom[i], y1);
+	}
+	
+	/**
+	 * How much of a column of the given height would be consumed by taking
+	 * out the span from top to bottom, all in graphics orientation.
+	 */
+	static int consumed(int height, int base, int top, int bottom) {
+		return Math.min(height, Math.max(0, bottom - Math.max(base - height, top)));
+	}
+	
+	/**
+	 * Take the span from top to bottom, in graphics orientation, out of
+	 * column i. Whatever was above it falls down to fill the gap.
+	 * @return true if the column changed
+	 */
+	protected boolean carveColumn(int i, int top, int bottom) {
+		int removed = consumed(mTerrain[i], mBase, top, bottom);
+		mTerrain[i] -= removed;
+		return removed > 0;
+	}
+	
+	/**
+	 * Remove the stamped spans from the terrain in one pass, then bring the
+	 * bounds, the index and the dirty range up to date once for the lot.
+	 */
+	private boolean applyCarve(int from, int to, int[] extent) {
+		int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+		int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE;
+		
+		from = Math.max(0, from);
+		to = Math.min(mTerrain.length - 1, to);
+		
+		for(int i = from; i <= to; i++) {
+			int surface = mBase - mTerrain[i];
+			int carveTop = mCarveTop[i], carveBottom = mCarveBottom[i];
+			
+			mCarveTop[i] = Integer.MAX_VALUE;
+			mCarveBottom[i] = Integer.MIN_VALUE;
+			
+			if(carveTop > carveBottom || !carveColumn(i, carveTop, carveBottom)) continue;
+			
+			left = Math.min(left, i);
+			right = Math.max(right, i);
+			top = Math.min(top, surface);
+			bottom = Math.max(bottom, Math.min(mBase, carveBottom));
+		}
+		
+		if(left > right) {
+			if(extent != null) setExtent(extent, 0, 0, 0, 0);
+			return false;
+		}
+		
+		update(1, 0, mTerrain.length - 1, left, right);
+		changed(left, right);
+		
+		if(extent != null) setExtent(extent, left, top, right + 1, bottom);
+		return true;
+	}
+	
+	private static void setExtent(int[] extent, int left, int top, int right, int bottom) {
+		extent[0] = left;
+		extent[1] = top;
+		extent[2] = right;
+		extent[3] = bottom;
+	}
+	
+	/**
+	 * Bring everything derived from the heights up to date after columns
+	 * left to right have changed. The index must already be updated.
+	 */
+	private void changed(int left, int right) {
+		mMinimum = mTreeMin[1];
+		mMaximum = mTreeMax[1];
+		invalidate(left, right);
+		mVersion++;
+		
+		// A column's normal depends on its neighbours' heights as well
+		int last = mTerrain.length - 1;
+		for(int i = Math.max(0, left - 1); i <= Math.min(last, right + 1); i++) {
+			int slopeX, slopeY;
+			// A note: these differences are swapped out of order because
+			// the Cartesian plane we are using is mirrored across the x-axis.
+			if(last == 0) {
+				slopeY = 0; slopeX = 1;
+			}
+			else if(i == 0){
+				slopeY = mTerrain[i] - mTerrain[i+1]; slopeX = 1;
+			}
+			else if(i == last) {
+				slopeY = mTerrain[i-1] - mTerrain[i]; slopeX = 1;
+			}
+			else {
+				slopeY = mTerrain[i-1] - mTerrain[i+1]; slopeX = 2;
+			}
+			
+			// The normal is the slope turned a quarter clockwise
+			float length = (float) Math.sqrt(slopeX * slopeX + slopeY * slopeY);
+			mNormals[2 * i] = slopeY / length;
+			mNormals[2 * i + 1] = -slopeX / length;
+		}
+	}
+	
+	/**
+	 * Mark a range of columns as changed
+	 * @param left
+	 * @param right inclusive
+	 */
+	private void invalidate(int left, int right) {
+		mDirtyLeft = Math.min(mDirtyLeft, left);
+		mDirtyRight = Math.max(mDirtyRight, right);
+	}
+	
+	public boolean isDirty() {
+		return mDirtyLeft <= mDirtyRight;
+	}
+	
+	/**
+	 * The first column that has changed since clean() was last called
+	 */
+	public int getDirtyLeft() {
+		return mDirtyLeft;
+	}
+	
+	/**
+	 * The last column that has changed since clean() was last called
+	 */
+	public int getDirtyRight() {
+		return mDirtyRight;
+	}
+	
+	/**
+	 * A number that changes whenever the ground does, so anything worked
+	 * out from the terrain can tell if it is out of date
+	 */
+	public int getVersion() {
+		return mVersion;
+	}
+	
+	/**
+	 * Forget which columns have changed, once they have been redrawn
+	 */
+	public void clean() {
+		mDirtyLeft = Integer.MAX_VALUE;
+		mDirtyRight = Integer.MIN_VALUE;
+	}
+	
+	/**
+	 * How many separate spans of solid ground column x is made of
+	 */
+	public int getSpanCount(int x) {
+		return mTerrain[x] > 0 ? 1 : 0;
+	}
+	
+	/**
+	 * The bottom of span s of column x, in our local orientation
+	 */
+	public int getSpanBottom(int x, int s) {
+		return 0;
+	}
+	
+	/**
+	 * The top of span s of column x, in our local orientation, exclusive
+	 */
+	public int getSpanTop(int x, int s) {
+		return mTerrain[x];
+	}
+
+	public int absAt(int x) {
+		return mBase - at(x);
+	}
+
+	
+
+	/**
+	 * The x component of the unit surface normal at column x
+	 */
+	public float getNormalX(int x) {
+		return mNormals[2 * x];
+	}
+	
+	/**
+	 * The y component of the unit surface normal at column x
+	 */
+	public float getNormalY(int x) {
+		return mNormals[2 * x + 1];
+	}
+	
+	/**
+	 * Write the normal to bounce off at (x, y), in graphics orientation,
+	 * into out. At either edge of the world something above the ground has
+	 * hit the wall rather than the ground.
+	 */
+	public Vector2D getBounceNormal(int x, int y, Vector2D out) {
+		if((x == 0 || x == getWidth() - 1) && y < absAt(x))
+			return out.set(1, 0);
+		
+		return out.set(getNormalX(x), getNormalY(x));
+	}
+}
@@ -0,0 +1,171 @@
+package org.oep.grenade.world;
+
+/**
+ * Where a grenade would go if it were thrown now, as a row of dots to draw
+ * while aiming. The dots follow the flight up to its first bounce and a
+ * little way after it.
+ *
+ * The aim is fed in every time the power or the direction might have
+ * changed, which is as often as the accelerometer reports, so this has to
+ * be cheap. Until the first bounce the flight is worked out in closed form
+ * from tables made once, so each step is a couple of multiply-adds and a
+ * terrain sweep rather than a run of the physics. Nothing is redone at all
+ * unless the aim or the ground has moved by more than can be seen, and the
+ * number of steps and dots is fixed, so the cost never grows. A change of
+ * power alone still retraces the whole flight, as it moves every point on
+ * it and so leaves nothing worth keeping.
+ */
+public class Trajectory {
+	/** How many steps of flight to follow before the first bounce */
+	public static final int MAX_STEPS = 90;
+
+	/** How many steps to follow after the first bounce */
+	public static final int BOUNCE_STEPS = 15;
+
+	/** A dot is drawn every this many steps */
+	public static final int DOT_SPACING = 3;
+
+	/** The most dots there can be, with one extra for the bounce */
+	public static final int MAX_DOTS = (MAX_STEPS + BOUNCE_STEPS) / DOT_SPACING + 2;
+
+	/** Changes to the aim smaller than these are not worth redoing it for */
+	private static final float POWER_EPSILON = 2f;
+	private static final float DIRECTION_EPSILON = 0.002f;
+	private static final float POSITION_EPSILON = 0.5f;
+
+	/**
+	 * After n steps from rest, a thrown body has gone TIME[n] times its
+	 * initial velocity, plus FALL[n] downwards. This is RigidBody.move
+	 * added up, since gravity is added to the velocity once a step.
+	 */
+	private static final float[] TIME = new float[MAX_STEPS + 1];
+	private static final float[] FALL = new float[MAX_STEPS + 1];
+
+	static {
+		float dt = World.STEP / 1000f;
+		for(int n = 0; n <= MAX_STEPS; n++) {
+			TIME[n] = dt * n;
+			FALL[n] = dt * World.GRAVITY * n * (n - 1) / 2;
+		}
+	}
+
+	/** The dots, as x, y pairs in graphics orientation */
+	private final float[] mDots = new float[2 * MAX_DOTS];
+	private int mDotCount;
+
+	/** The aim and the ground the dots were worked out for */
+	private Terrain mTerrain;
+	private int mTerrainVersion;
+	private float mX, mY, mUX, mUY, mPower;
+	private boolean mValid;
+
+	private final RigidBody mBody = new RigidBody();
+	private final Contact mContact = new Contact();
+	private final Vector2D mWarp = new Vector2D(0, 0);
+
+	/**
+	 * Aim from (x, y) in the direction of the unit vector (ux, uy)
+	 * @return true if the dots changed
+	 */
+	public boolean aim(Terrain terrain, float x, float y, float ux, float uy, float power) {
+		if(mValid && terrain == mTerrain && terrain.getVersion() == mTerrainVersion
+				&& Math.abs(power - mPower) < POWER_EPSILON
+				&& Math.abs(ux - mUX) < DIRECTION_EPSILON
+				&& Math.abs(uy - mUY) < DIRECTION_EPSILON
+				&& Math.abs(x - mX) < POSITION_EPSILON
+				&& Math.abs(y - mY) < POSITION_EPSILON)
+			return false;
+
+		mTerrain = terrain;
+		mTerrainVersion = terrain.getVersion();
+		mX = x;
+		mY = y;
+		mUX = ux;
+		mUY = uy;
+		mPower = power;
+		mValid = true;
+
+		trace();
+		return true;
+	}
+
+	/**
+	 * Forget the aim, so the next one is worked out whatever it is
+	 */
+	public void invalidate() {
+		mValid = false;
+		mDotCount = 0;
+	}
+
+	private void trace() {
+		float vx = mPower * mUX, vy = mPower * mUY;
+		Contact contact = mContact;
+
+		mDotCount = 0;
+		addDot(mX, mY);
+
+		float px = mX, py = mY;
+		for(int n = 1; n <= MAX_STEPS; n++) {
+			float x = mX + vx * TIME[n];
+			float y = mY + vy * TIME[n] + FALL[n];
+
+			if(mTerrain.sweep(px, py, x, y, contact)) {
+				addDot(contact.x, contact.y);
+				bounce(vx, vy + World.GRAVITY * n);
+				return;
+			}
+
+			if(n % DOT_SPACING == 0)
+				addDot(x, y);
+
+			px = x;
+			py = y;
+		}
+	}
+
+	/**
+	 * Follow the grenade off the terrain from the contact, with the
+	 * velocity it had coming in, until it lands again
+	 */
+	private void bounce(float vx, float vy) {
+		Contact contact = mContact;
+		RigidBody body = mBody;
+
+		World.releaseGrenade(body, contact.x, contact.y, vx, vy);
+		body.bounceNormal(contact.nx, contact.ny);
+
+		// Spend what is left of the step travelling away from the contact,
+		// as World.moveBody does, so the steps after line up with a throw
+		float dt = (1 - contact.time) * World.STEP / 1000f;
+		body.setPosition(contact.x + dt * body.getVX(), contact.y + dt * body.getVY());
+
+		for(int n = 1; n <= BOUNCE_STEPS; n++) {
+			boolean bounced = World.moveBody(mTerrain, body, contact, mWarp);
+
+			if(bounced || n % DOT_SPACING == 0)
+				addDot(body.getX(), body.getY());
+			if(bounced)
+				return;
+		}
+	}
+
+	private void addDot(float x, float y) {
+		if(mDotCount == MAX_DOTS) return;
+
+		mDots[2 * mDotCount] = x;
+		mDots[2 * mDotCount + 1] = y;
+		mDotCount++;
+	}
+
+	/**
+	 * @return the dots as x, y pairs; only the first 2 * getDotCount()
+	 *         values mean anything
+	 */
+	public float[] getDots() {
+		return mDots;
+	}
+
+	public int getDotCount() {
+		return mDotCount;
+	}
+}
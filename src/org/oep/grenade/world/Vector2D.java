@@ -0,0 +1,93 @@
+package org.oep.grenade.world;
+
+/**
+ * A mutable 2D vector. Everything works in place or into a vector you pass
+ * in, and in float throughout, so the physics can use it every step without
+ * making garbage. The methods that change a vector return it, so calls can
+ * be chained.
+ */
+public class Vector2D {
+	public float x = 0.0f, y = 0.0f;
+
+	public Vector2D(float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	public Vector2D set(float x, float y) {
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+
+	public Vector2D set(Vector2D v) {
+		x = v.x;
+		y = v.y;
+		return this;
+	}
+
+	public Vector2D add(float dx, float dy) {
+		x += dx;
+		y += dy;
+		return this;
+	}
+
+	public Vector2D add(Vector2D v) {
+		x += v.x;
+		y += v.y;
+		return this;
+	}
+
+	public Vector2D scale(float s) {
+		x *= s;
+		y *= s;
+		return this;
+	}
+
+	public float getLength() {
+		return (float) Math.sqrt(x * x + y * y);
+	}
+
+	/**
+	 * Write the unit vector in this direction into out, which may be this
+	 * vector. The zero vector stays zero.
+	 * @return the length this vector had
+	 */
+	public float normalise(Vector2D out) {
+		float l = getLength();
+
+		if(l == 0) {
+			out.set(0, 0);
+		}
+		else {
+			out.set(x / l, y / l);
+		}
+
+		return l;
+	}
+
+	/**
+	 * Turn this into a unit vector
+	 * @return the length it had
+	 */
+	public float normalise() {
+		return normalise(this);
+	}
+
+	/**
+	 * Bounce off a surface with the unit normal (nx, ny). The part of the
+	 * vector along the normal is turned around and scaled by restitution,
+	 * and the part along the surface is scaled by friction.
+	 */
+	public Vector2D reflect(float nx, float ny, float restitution, float friction) {
+		// The tangent is the normal turned back a quarter
+		float tx = -ny, ty = nx;
+
+		float nv = -restitution * (nx * x + ny * y);
+		float tv = friction * (tx * x + ty * y);
+
+		x = nv * nx + tv * tx;
+		y = nv * ny + tv * ty;
+		return this;
+	}
+}
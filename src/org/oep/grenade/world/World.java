@@ -0,0 +1,1095 @@
+package org.oep.grenade.world;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * The game itself: the terrain, the two players, the grenade and whatever is
+ * left of anyone who got too close to it. Nothing in here knows about
+ * drawing, sound or input, so a world can be stepped on its own, as fast as
+ * you like.
+ *
+ * Positions are in graphics orientation, with the bottom of the world at
+ * the terrain's base.
+ */
+public class World {
+	/**
+	 * The minimum distance a grenade must achieve before it will do some damage
+	 */
+	public static final int BLAST_RADIUS = 55;
+
+	/** The maximum velocity a grenade will launch an enemy */
+	public static final float BLAST_POWER = 865f;
+
+	/** The imprecision applied to BLAST_POWER */
+	public static final int BLAST_SPREAD = 90;
+
+	/** The distance at which a grenade will 'kill' an enemy */
+	public static final int KILL_RADIUS = 5;
+
+	/** The maximum damage a grenade can deal */
+	public static final int GRENADE_MAX_DMG = Player.MAX_HEALTH / 2;
+
+	/** The maximum fall damage you can take */
+	public static final int MAX_FALL_DMG = Player.MAX_HEALTH / 4;
+
+	/** Fall damage threshold speed */
+	public static final int FALL_THRESHOLD = 25;
+
+	/** Max fall damage achieved at this velocity */
+	public static final int FALL_MAX = 50;
+
+	/** The grenade will blow up after this many frames */
+	public static final int GRENADE_FUSE = 150;
+
+	/** The most times a body can bounce off the terrain in one frame */
+	public static final int MAX_BOUNCES = 3;
+
+	/**
+	 * A body that has moved less than this many pixels each way in each of
+	 * SLEEP_FRAMES frames in a row goes to sleep until something near it
+	 * changes. Something resting on the ground still jiggles a little,
+	 * because gravity pulls it in and it bounces back out.
+	 */
+	public static final float SLEEP_DISTANCE = 0.5f;
+	public static final int SLEEP_FRAMES = 10;
+
+	/** Frames per second, of course */
+	public static final int FRAMES_PER_SECOND = 30;
+
+	/** The length of one frame, in milliseconds */
+	public static final long STEP = 1000 / FRAMES_PER_SECOND;
+
+	public static final float GRAVITY = 9.8f;
+
+	/** How many kinds of giblet there are to choose from */
+	public static final int GIBLET_KINDS = 3;
+
+	/** The most giblets in the world at once */
+	public static final int GIBLET_CAPACITY = 8 * Player.GIBLET_CHUNKS;
+
+	/** How many frames a giblet lies around for */
+	public static final int GIBLET_LIFE = 20 * FRAMES_PER_SECOND;
+
+	/** The most grenades, bomblets and all, that can be in the air at once */
+	public static final int MAX_GRENADES = 16;
+
+	/** How many bomblets a cluster grenade scatters when it goes off */
+	public static final int CLUSTER_BOMBLETS = 5;
+
+	/** How big a hole a bomblet blows */
+	public static final int BOMBLET_RADIUS = BLAST_RADIUS * 2 / 5;
+
+	/**
+	 * Bomblets go off this many frames after they are scattered, plus up
+	 * to BOMBLET_FUSE_SPREAD more so they don't all go at once
+	 */
+	public static final int BOMBLET_FUSE = FRAMES_PER_SECOND;
+	public static final int BOMBLET_FUSE_SPREAD = FRAMES_PER_SECOND / 2;
+
+	/** How fast bomblets are scattered */
+	public static final float BOMBLET_SPEED = 250f;
+
+	/** How far above a player's feet the grenade is let go of */
+	public static final int THROW_HEIGHT = 10;
+
+	public static final int TURN_RED = 0;
+	public static final int TURN_BLUE = 1;
+
+	/**
+	 * Let bodies bounce off each other, and giblets bounce off bodies.
+	 * Giblets never bounce off each other.
+	 */
+	public static final boolean BODY_CONTACTS = true;
+
+	/**
+	 * Ids of things in the spatial grid. Giblets go in by their slot in
+	 * the pool, and the bodies come after them.
+	 */
+	private static final int RED_ID = GIBLET_CAPACITY;
+	private static final int BLUE_ID = GIBLET_CAPACITY + 1;
+	private static final int FIRST_GRENADE_ID = GIBLET_CAPACITY + 2;
+	private static final int GRID_CAPACITY = FIRST_GRENADE_ID + MAX_GRENADES;
+
+	/**
+	 * Hears about the things that happen in the world which someone might
+	 * want to play a sound for
+	 */
+	public interface Listener {
+		/**
+		 * Grenades went off. However many went off in the same frame, this
+		 * is only heard once.
+		 * @param x where the first one went off
+		 * @param y where the first one went off
+		 * @param count how many went off
+		 */
+		void onExplosion(int x, int y, int count);
+
+		/** A player was killed and splattered into giblets */
+		void onSplat(Player player);
+	}
+
+	private Terrain mTerrain;
+	private Random mRandom;
+	private Listener mListener;
+
+	/** Where commands from outside are written down, if anywhere */
+	private MatchLog mLog;
+
+	/** How many steps have been run */
+	private int mSteps;
+
+	/** Times each part of step, if anything */
+	private Profiler mProfiler;
+	private int mGrenadePhase, mCloudPhase, mPlayerPhase, mGibletPhase,
+			mContactPhase;
+
+	private int mCurrentTurn;
+
+	/** These are the objects that keep up with our players */
+	private Player mRedPlayer = new Player();
+	private Player mBluePlayer = new Player();
+
+	/** The grenades in the air, each burning its own fuse */
+	private ArrayList<Grenade> mGrenades = new ArrayList<Grenade>(MAX_GRENADES);
+
+	/** Grenades that have gone off, kept to be thrown again */
+	private ArrayList<Grenade> mSpareGrenades = new ArrayList<Grenade>(MAX_GRENADES);
+
+	/** Grenades that went off this frame, until their blasts are done */
+	private ArrayList<Grenade> mDetonated = new ArrayList<Grenade>(MAX_GRENADES);
+
+	private int mGrenadeWidth, mGrenadeHeight;
+
+	/** How long the fuse on the grenade in hand has left */
+	private int mGrenadeTimer;
+
+	/** The blasts going off this frame, all handled together */
+	private int[] mBlastX = new int[MAX_GRENADES];
+	private int[] mBlastY = new int[MAX_GRENADES];
+	private int[] mBlastRadius = new int[MAX_GRENADES];
+	private int mBlastCount;
+
+	private ArrayList<Cloud> mClouds = new ArrayList<Cloud>();
+	private ParticlePool mGiblets = new ParticlePool(GIBLET_CAPACITY);
+
+	/** Where moveBody puts bodies that have ended up inside the terrain */
+	private Vector2D mWarpPoint = new Vector2D(0, 0);
+
+	/** Where moveBody found a body running into the terrain */
+	private Contact mContact = new Contact();
+
+	/** Where blastVelocity puts the velocity it works out */
+	private Vector2D mBlastVelocity = new Vector2D(0, 0);
+
+	/** Where blastVelocity works out each blast's share */
+	private Vector2D mBlastPart = new Vector2D(0, 0);
+
+	/**
+	 * Everything that can be blasted or bumped into, by where it is.
+	 * Bodies go in by their middle and giblets by their position.
+	 */
+	private SpatialGrid mGrid;
+
+	/** The biggest radius of any body in the grid */
+	private float mMaxRadius;
+
+	/** Where grid queries put what they find */
+	private int[] mNearby = new int[GRID_CAPACITY];
+
+	/**
+	 * Start a game on the given terrain, with the players dropped somewhere
+	 * random
+	 * @param terrain
+	 * @param random where every random choice in the game comes from
+	 */
+	public World(Terrain terrain, Random random) {
+		mTerrain = terrain;
+		mRandom = random;
+		mGrid = new SpatialGrid(terrain.getWidth(), terrain.getBase(),
+				BLAST_RADIUS, GRID_CAPACITY);
+
+		mRedPlayer.setGravity(GRAVITY);
+		mBluePlayer.setGravity(GRAVITY);
+
+		mRedPlayer.setPhysics(false);
+		mBluePlayer.setPhysics(false);
+
+		mRedPlayer.setFriction(0.2f);
+		mRedPlayer.setElasticity(0.3f);
+
+		mBluePlayer.setFriction(0.2f);
+		mBluePlayer.setElasticity(0.3f);
+
+		// Randomly decide whose turn it is
+		mCurrentTurn = (mRandom.nextInt(2) == 0) ? TURN_BLUE : TURN_RED;
+
+		positionPlayers();
+	}
+
+	private void positionPlayers() {
+		int rx = mRandom.nextInt(mTerrain.getWidth());
+		int bx = mRandom.nextInt(mTerrain.getWidth());
+
+		mRedPlayer.placeAt(rx, mTerrain.absAt(rx));
+		mBluePlayer.placeAt(bx, mTerrain.absAt(bx));
+
+		// TODO: Do something in case the players are too close
+	}
+
+	public void setListener(Listener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * Write down everything done to the world from here on, so the match
+	 * can be replayed
+	 * @param log the log, or null to stop
+	 */
+	public void setLog(MatchLog log) {
+		mLog = log;
+	}
+
+	/**
+	 * Time each part of step from here on
+	 * @param profiler the profiler, or null to stop
+	 */
+	public void setProfiler(Profiler profiler) {
+		mProfiler = profiler;
+		if (profiler == null)
+			return;
+
+		mGrenadePhase = profiler.addPhase("grenades");
+		mCloudPhase = profiler.addPhase("clouds");
+		mPlayerPhase = profiler.addPhase("players");
+		mGibletPhase = profiler.addPhase("giblets");
+		mContactPhase = profiler.addPhase("contacts");
+	}
+
+	/**
+	 * Run the game forward by one frame of STEP milliseconds
+	 */
+	public void step() {
+		if (mProfiler != null)
+			mProfiler.mark();
+
+		savePositions();
+		doGrenadeLogic();
+		lap(mGrenadePhase);
+		doCloudLogic();
+		lap(mCloudPhase);
+		doPlayerLogic(mRedPlayer);
+		doPlayerLogic(mBluePlayer);
+		lap(mPlayerPhase);
+		doGibletLogic();
+		lap(mGibletPhase);
+
+		if (BODY_CONTACTS) {
+			buildGrid();
+			doContactLogic();
+			lap(mContactPhase);
+		}
+
+		mSteps++;
+	}
+
+	private void lap(int phase) {
+		if (mProfiler != null)
+			mProfiler.lap(phase);
+	}
+
+	/**
+	 * Remember where every body is before a step, so drawing can blend
+	 * between this step and the next.
+	 */
+	private void savePositions() {
+		mRedPlayer.savePosition();
+		mBluePlayer.savePosition();
+
+		for (int i = 0; i < mGrenades.size(); i++) {
+			mGrenades.get(i).savePosition();
+		}
+
+		// The giblets save their own positions as they step
+	}
+
+	private void doGibletLogic() {
+		mGiblets.step(mTerrain, STEP, GRAVITY, mContact, mWarpPoint);
+	}
+
+	private void doPlayerLogic(Player player) {
+		if(player.isDead() == true) {
+			// The player is dead. There is nothing we can do for him.
+			// Just move on, buddy. It'll be all right...
+
+			return;
+		}
+
+		if (!player.getPhysics()) {
+			// He's asleep on the ground until something wakes him
+			player.nextFrame();
+			return;
+		}
+
+		int base = mTerrain.getBase();
+		boolean bounced = moveBody(player);
+		int x = (int) player.getX();
+		int y = (int) player.getY();
+		int ground = base - mTerrain.floorAt(x, base - y);
+
+		if(bounced) {
+			// Dot the velocity with the normal at this point to see how much
+			// of it was normal
+			float dmgVelocity = Math.abs(mTerrain.getNormalX(x) * player.getVX()
+					+ mTerrain.getNormalY(x) * player.getVY());
+
+			int dmg = (int) Math.max(0, Math.min(MAX_FALL_DMG, MAX_FALL_DMG * (dmgVelocity - FALL_THRESHOLD) / (FALL_MAX - FALL_THRESHOLD)));
+			player.takeDamage(dmg);
+
+			if(player.getHealth() == 0) {
+				makeMovingGiblets(player);
+				player.setDead(true);
+				if (mListener != null)
+					mListener.onSplat(player);
+			}
+		}
+
+		// If the player has stopped moving or its physics timer is up and it is
+		// sitting on the ground, stop! Resting on a contact can leave it a
+		// fraction of a pixel above the ground, which still counts.
+		boolean still = player.tickStill(SLEEP_DISTANCE, SLEEP_FRAMES);
+		if (player.getPhysics() && (still || player.getPhysicsTimer() == 0)
+				&& Math.abs(player.getY() - ground) < 1) {
+			player.setPhysics(false);
+			player.setVelocity(0, 0);
+			player.placeAt(x, ground);
+			player.nextFrame();
+		}
+	}
+
+	/**
+	 * Wake up any sleeping bodies between columns left and right, because
+	 * the terrain under them might have changed
+	 */
+	private void wakeBodies(int left, int right) {
+		wakePlayer(mRedPlayer, left, right);
+		wakePlayer(mBluePlayer, left, right);
+		mGiblets.wake(left, right);
+	}
+
+	private void wakePlayer(Player player, int left, int right) {
+		if (player.isDead() || player.getPhysics())
+			return;
+
+		int x = (int) player.getX();
+		if (x >= left && x <= right)
+			player.setPhysics(true);
+	}
+
+	private void doGrenadeLogic() {
+		mGrenadeTimer = Math.max(0, mGrenadeTimer - 1);
+
+		if (mGrenades.isEmpty())
+			return;
+
+		// Move everything first and gather up whatever goes off, so all
+		// the blasts this frame can be handled in one go
+		mBlastCount = 0;
+		for (int i = mGrenades.size() - 1; i >= 0; i--) {
+			Grenade g = mGrenades.get(i);
+			moveBody(g);
+
+			if (g.tickFuse()) {
+				mBlastX[mBlastCount] = (int) g.getX();
+				mBlastY[mBlastCount] = (int) g.getY();
+				mBlastRadius[mBlastCount] = g.getRadius();
+				mBlastCount++;
+
+				mGrenades.remove(i);
+				mDetonated.add(g);
+			}
+		}
+
+		if (mBlastCount == 0)
+			return;
+
+		detonate();
+
+		// Cluster grenades scatter their bomblets over the fresh craters
+		for (int i = 0; i < mDetonated.size(); i++) {
+			Grenade g = mDetonated.get(i);
+			scatterBomblets(g);
+			mSpareGrenades.add(g);
+		}
+		mDetonated.clear();
+
+		// The turn is over once the last of it has gone off
+		if (mGrenades.isEmpty())
+			nextTurn();
+	}
+
+	/**
+	 * Set off every blast in the batch. However many there are, the
+	 * terrain is carved once, the grid is searched once and the listener
+	 * hears about it once.
+	 */
+	private void detonate() {
+		if (mListener != null)
+			mListener.onExplosion(mBlastX[0], mBlastY[0], mBlastCount);
+
+		// Subtract off any terrain that may have been consumed in the
+		// blasts
+		mTerrain.carveCircles(mBlastX, mBlastY, mBlastRadius, mBlastCount, null);
+
+		// Anything asleep in a blast has either lost the ground under it or
+		// is about to be blown away
+		int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+		for (int i = 0; i < mBlastCount; i++) {
+			left = Math.min(left, mBlastX[i] - mBlastRadius[i]);
+			right = Math.max(right, mBlastX[i] + mBlastRadius[i]);
+
+			// Make the blast cloud
+			mClouds.add(new Cloud(mBlastX[i], mBlastY[i]));
+		}
+		wakeBodies(left, right);
+
+		// We could have hit a player, or giblets...
+		blastNearby();
+	}
+
+	/**
+	 * Throw out a cluster grenade's bomblets, fanned out upwards from
+	 * where it went off
+	 */
+	private void scatterBomblets(Grenade cluster) {
+		int count = Math.min(cluster.getBomblets(), MAX_GRENADES - mGrenades.size());
+
+		for (int i = 0; i < count; i++) {
+			// Spread them evenly over the upper half, with a bit of wobble.
+			// StrictMath gives the same answer on every device, which
+			// replays rely on.
+			double angle = -Math.PI * (i + 0.25 + 0.5 * mRandom.nextFloat()) / count;
+			float speed = BOMBLET_SPEED * (0.5f + mRandom.nextFloat());
+
+			Grenade g = newGrenade();
+			releaseGrenade(g, cluster.getX(), cluster.getY() - THROW_HEIGHT,
+					(float) StrictMath.cos(angle) * speed, (float) StrictMath.sin(angle) * speed);
+			g.arm(BOMBLET_FUSE + mRandom.nextInt(BOMBLET_FUSE_SPREAD), BOMBLET_RADIUS, 0);
+			mGrenades.add(g);
+		}
+	}
+
+	private Grenade newGrenade() {
+		int spare = mSpareGrenades.size();
+		Grenade g = (spare > 0) ? mSpareGrenades.remove(spare - 1) : new Grenade();
+		g.setSize(mGrenadeWidth, mGrenadeHeight);
+		return g;
+	}
+
+	/**
+	 * Hand the grenade to the other player, unless they are dead
+	 */
+	private void nextTurn() {
+		int next = (mCurrentTurn == TURN_RED) ? TURN_BLUE : TURN_RED;
+		if (!getPlayer(next).isDead())
+			mCurrentTurn = next;
+	}
+
+	private void doCloudLogic() {
+		// Go backwards so removing a cloud doesn't skip the next one
+		for (int i = mClouds.size() - 1; i >= 0; i--) {
+			Cloud c = mClouds.get(i);
+			c.update();
+
+			if (c.getAlpha() == 0) {
+				mClouds.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * Put everything that can be blasted or bumped into in the grid, by
+	 * where it is now
+	 */
+	private void buildGrid() {
+		SpatialGrid grid = mGrid;
+		grid.clear();
+		mMaxRadius = 0;
+
+		if (!mRedPlayer.isDead())
+			addBody(mRedPlayer, RED_ID);
+		if (!mBluePlayer.isDead())
+			addBody(mBluePlayer, BLUE_ID);
+		for (int i = 0; i < mGrenades.size(); i++) {
+			addBody(mGrenades.get(i), FIRST_GRENADE_ID + i);
+		}
+
+		ParticlePool giblets = mGiblets;
+		for (int n = 0; n < giblets.size(); n++) {
+			int i = giblets.slot(n);
+			if (giblets.isAlive(i))
+				grid.add(i, giblets.getX(i), giblets.getY(i));
+		}
+
+		grid.build();
+	}
+
+	private void addBody(RigidBody body, int id) {
+		mGrid.add(id, body.getX(), middle(body));
+		mMaxRadius = Math.max(mMaxRadius, radius(body));
+	}
+
+	private RigidBody getBody(int id) {
+		switch (id) {
+		case RED_ID:
+			return mRedPlayer;
+		case BLUE_ID:
+			return mBluePlayer;
+		default:
+			return mGrenades.get(id - FIRST_GRENADE_ID);
+		}
+	}
+
+	/**
+	 * Bodies bump into each other as circles around their middles
+	 */
+	private static float radius(RigidBody body) {
+		return Math.max(body.getWidth(), body.getHeight()) / 2f;
+	}
+
+	private static float middle(RigidBody body) {
+		return body.getY() - body.getHeight() / 2f;
+	}
+
+	/**
+	 * Blast everything the grid finds near this frame's blasts. Giblets go
+	 * first, so the ones a player is blown into aren't blasted twice.
+	 */
+	private void blastNearby() {
+		buildGrid();
+
+		// One query covers every blast: a circle around all of them. The
+		// players are in the grid by their middles, which can be further
+		// from a blast than their feet, so look a bit wider still.
+		int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+		int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE;
+		int reach = 0;
+		for (int i = 0; i < mBlastCount; i++) {
+			left = Math.min(left, mBlastX[i]);
+			right = Math.max(right, mBlastX[i]);
+			top = Math.min(top, mBlastY[i]);
+			bottom = Math.max(bottom, mBlastY[i]);
+			reach = Math.max(reach, mBlastRadius[i]);
+		}
+
+		float w = right - left, h = bottom - top;
+		float radius = (float) Math.sqrt(w * w + h * h) / 2 + reach + mMaxRadius;
+		int found = mGrid.query((left + right) / 2f, (top + bottom) / 2f,
+				radius, mNearby);
+		boolean red = false, blue = false;
+
+		for (int n = 0; n < found; n++) {
+			int id = mNearby[n];
+			if (id == RED_ID)
+				red = true;
+			else if (id == BLUE_ID)
+				blue = true;
+			else if (id < GIBLET_CAPACITY
+					&& blastVelocity(mGiblets.getX(id), mGiblets.getY(id),
+							mBlastVelocity))
+				mGiblets.setVelocity(id, mBlastVelocity.x, mBlastVelocity.y);
+		}
+
+		if (red)
+			blastPlayer(mRedPlayer);
+		if (blue)
+			blastPlayer(mBluePlayer);
+	}
+
+	/**
+	 * Bounce bodies off each other, and moving giblets off bodies. Only
+	 * what the grid finds near each body is looked at, so this doesn't get
+	 * any slower for giblets lying around elsewhere.
+	 */
+	private void doContactLogic() {
+		if (!mRedPlayer.isDead())
+			collideNearby(mRedPlayer, RED_ID);
+		if (!mBluePlayer.isDead())
+			collideNearby(mBluePlayer, BLUE_ID);
+		for (int i = 0; i < mGrenades.size(); i++) {
+			collideNearby(mGrenades.get(i), FIRST_GRENADE_ID + i);
+		}
+	}
+
+	private void collideNearby(RigidBody body, int id) {
+		float x = body.getX(), y = middle(body), r = radius(body);
+		int found = mGrid.query(x, y, r + mMaxRadius, mNearby);
+
+		for (int n = 0; n < found; n++) {
+			int other = mNearby[n];
+
+			if (other < GIBLET_CAPACITY)
+				collideGiblet(body, other, x, y, r);
+			else if (other > id)
+				// Each pair of bodies only once
+				collideBodies(body, getBody(other));
+		}
+	}
+
+	/**
+	 * Bounce a moving giblet off a body. Giblets are too light to push
+	 * anything around, so only the giblet changes.
+	 */
+	private void collideGiblet(RigidBody body, int i, float x, float y, float r) {
+		ParticlePool giblets = mGiblets;
+		if (!giblets.isAlive(i) || !giblets.isAwake(i))
+			return;
+
+		float dx = giblets.getX(i) - x, dy = giblets.getY(i) - y;
+		float d2 = dx * dx + dy * dy;
+		if (d2 >= r * r || d2 == 0)
+			return;
+
+		float d = (float) Math.sqrt(d2);
+		float nx = dx / d, ny = dy / d;
+
+		// Only if it is heading in, or it would stick
+		float vn = (giblets.getVX(i) - body.getVX()) * nx
+				+ (giblets.getVY(i) - body.getVY()) * ny;
+		if (vn >= 0)
+			return;
+
+		float j = -(1 + giblets.getElasticity(i)) * vn;
+		giblets.setVelocity(i, giblets.getVX(i) + j * nx, giblets.getVY(i)
+				+ j * ny);
+	}
+
+	/**
+	 * Push two overlapping bodies apart and bounce them off each other.
+	 * A body that is asleep stays put and the other one bounces off it.
+	 * Players only push each other sideways, since one held up on the
+	 * other's head would never be near enough the ground to fall asleep.
+	 */
+	private void collideBodies(RigidBody a, RigidBody b) {
+		// Grenades start out inside whoever threw them
+		Player thrower = getPlayer(mCurrentTurn);
+		if ((a instanceof Grenade && b == thrower)
+				|| (b instanceof Grenade && a == thrower))
+			return;
+
+		float ia = a.getPhysics() ? 1 : 0, ib = b.getPhysics() ? 1 : 0;
+		float moving = ia + ib;
+		if (moving == 0)
+			return;
+
+		float dx = b.getX() - a.getX(), dy = middle(b) - middle(a);
+		float reach = radius(a) + radius(b);
+		float d2 = dx * dx + dy * dy;
+		if (d2 >= reach * reach || d2 == 0)
+			return;
+
+		float nx, ny, overlap;
+		if (a instanceof Player && b instanceof Player) {
+			// Just far enough apart sideways that they no longer touch
+			nx = dx < 0 ? -1 : 1;
+			ny = 0;
+			overlap = ((float) Math.sqrt(reach * reach - dy * dy) - Math.abs(dx)) / moving;
+		}
+		else {
+			float d = (float) Math.sqrt(d2);
+			nx = dx / d;
+			ny = dy / d;
+			overlap = (reach - d) / moving;
+		}
+
+		if (ia != 0)
+			pushBody(a, -overlap * nx, -overlap * ny);
+		if (ib != 0)
+			pushBody(b, overlap * nx, overlap * ny);
+
+		float vn = (b.getVX() - a.getVX()) * nx + (b.getVY() - a.getVY()) * ny;
+		if (vn >= 0)
+			return;
+
+		float e = Math.min(a.getElasticity(), b.getElasticity());
+		float j = -(1 + e) * vn / moving;
+		a.setVelocity(a.getVX() - ia * j * nx, a.getVY() - ia * j * ny);
+		b.setVelocity(b.getVX() + ib * j * nx, b.getVY() + ib * j * ny);
+	}
+
+	/**
+	 * Shove a body by (dx, dy), but only as far as the terrain and the
+	 * edges of the world let it go
+	 */
+	private void pushBody(RigidBody body, float dx, float dy) {
+		Terrain terrain = mTerrain;
+		Contact contact = mContact;
+		float x0 = body.getX(), y0 = body.getY();
+		float x1 = Math.max(0, Math.min(terrain.getWidth() - 1, x0 + dx));
+		float y1 = y0 + dy;
+
+		if (!terrain.sweep(x0, y0, x1, y1, contact)) {
+			body.setPosition(x1, y1);
+		}
+		else if (contact.time == 0
+				&& terrain.isIllegal(x0, terrain.getBase() - y0)) {
+			// It was already inside the terrain, so just get it out
+			terrain.getWarpPoint(x0, y0, mWarpPoint);
+			body.setPosition(mWarpPoint.x, mWarpPoint.y);
+		}
+		else {
+			body.setPosition(contact.x, contact.y);
+		}
+	}
+
+	private void blastPlayer(Player player) {
+		if (player.isDead() == true)
+			return;
+
+		int dmg = 0;
+		for (int i = 0; i < mBlastCount; i++) {
+			float dx = player.getX() - mBlastX[i], dy = player.getY() - mBlastY[i];
+			dmg += blastDamage(Math.sqrt(dx * dx + dy * dy), mBlastRadius[i]);
+		}
+		if (dmg == 0)
+			return;
+
+		player.takeDamage(dmg);
+
+		// If the player is dead we don't need to blast him any more. But we
+		// will blast his giblets.
+		if (player.getHealth() == 0) {
+			makeExplodedGiblets(player);
+			player.setDead(true);
+			if (mListener != null)
+				mListener.onSplat(player);
+		} else {
+			blastBody(player);
+		}
+	}
+
+	/**
+	 * How much a grenade going off the given distance away hurts
+	 */
+	static int blastDamage(double distance) {
+		return blastDamage(distance, BLAST_RADIUS);
+	}
+
+	/**
+	 * How much a blast of the given radius going off the given distance
+	 * away hurts. Smaller blasts hurt less.
+	 */
+	static int blastDamage(double distance, int radius) {
+		if (distance > radius)
+			return 0;
+
+		double scale = Math.max(0, Math.min((radius - distance)
+				/ (radius - KILL_RADIUS), 1));
+		return (int) (scale * GRENADE_MAX_DMG * radius / BLAST_RADIUS);
+	}
+
+	/**
+	 * Splatter a body into giblets, all moving at the given velocity
+	 * @return the slot of the first giblet in the pool
+	 */
+	private int makeGiblets(RigidBody body, float vx, float vy) {
+		int left = body.getLeft(), top = body.getTop();
+		int width = Math.max(1, body.getWidth());
+		int height = Math.max(1, body.getHeight());
+		int first = -1;
+
+		for (int i = 0; i < Player.GIBLET_CHUNKS; i++) {
+			int slot = mGiblets.spawn(left + mRandom.nextInt(width),
+					top + mRandom.nextInt(height), vx, vy, 0.3f, 0.3f,
+					mRandom.nextInt(GIBLET_KINDS), GIBLET_LIFE);
+
+			if (first < 0)
+				first = slot;
+		}
+
+		return first;
+	}
+
+	private void makeExplodedGiblets(RigidBody player) {
+		int slot = makeGiblets(player, 0, 0);
+
+		for(int i = 0; i < Player.GIBLET_CHUNKS; i++) {
+			if (blastVelocity(mGiblets.getX(slot), mGiblets.getY(slot),
+					mBlastVelocity)) {
+				mGiblets.setVelocity(slot, mBlastVelocity.x, mBlastVelocity.y);
+			}
+			slot = (slot + 1) % GIBLET_CAPACITY;
+		}
+	}
+
+	private void makeMovingGiblets(RigidBody player) {
+		makeGiblets(player, player.getVX(), player.getVY());
+	}
+
+	private void blastBody(RigidBody body) {
+		if (!blastVelocity(body.getX(), body.getY(), mBlastVelocity))
+			return;
+
+		// And set it!
+		body.setVelocity(mBlastVelocity.x, mBlastVelocity.y);
+
+		// Enable physics and the world flies away with you!!!
+		body.setPhysics(true);
+		body.setPhysicsTimer(50);
+	}
+
+	/**
+	 * Work out how fast this frame's blasts send something at (x, y)
+	 * flying, adding up every blast it is in
+	 * @return false if it is out of all of them
+	 */
+	private boolean blastVelocity(float x, float y, Vector2D out) {
+		Vector2D part = mBlastPart;
+		boolean hit = false;
+		out.set(0, 0);
+
+		for (int i = 0; i < mBlastCount; i++) {
+			if (blastVelocity(x - mBlastX[i], y - mBlastY[i], mBlastRadius[i], part)) {
+				out.add(part);
+				hit = true;
+			}
+		}
+
+		return hit;
+	}
+
+	/**
+	 * Work out how fast one blast sends something flying
+	 * @param bx where the thing is from the blast
+	 * @param by where the thing is from the blast
+	 * @return false if it is out of the blast
+	 */
+	private boolean blastVelocity(float bx, float by, int radius, Vector2D out) {
+		// Get a vector in the direction the thingy will travel
+		float distance = out.set(bx, by).getLength();
+		if (distance > radius)
+			return false;
+
+		float scale = Math.max(0, Math.min((radius - distance)
+				/ (radius - KILL_RADIUS), 1));
+		float power = scale * BLAST_POWER * radius / BLAST_RADIUS
+				+ mRandom.nextInt(BLAST_SPREAD);
+
+		// In case we get a zero vector, go straight up and in some other
+		// direction
+		if (distance == 0)
+			out.set(-50 + mRandom.nextInt(100), -1);
+
+		out.normalise();
+		out.scale(power);
+		return true;
+	}
+
+	/**
+	 * Pull the pin. The grenade goes off GRENADE_FUSE frames from now,
+	 * whether or not it has been thrown by then.
+	 */
+	public void startFuse() {
+		if (mLog != null)
+			mLog.fuse(mSteps);
+
+		mGrenadeTimer = GRENADE_FUSE;
+	}
+
+	/**
+	 * Let go of the grenade at (x, y) with the given velocity
+	 */
+	public void throwGrenade(float x, float y, float vx, float vy) {
+		throwGrenade(x, y, vx, vy, false);
+	}
+
+	/**
+	 * Let go of the grenade at (x, y) with the given velocity. Its fuse is
+	 * whatever is left since startFuse.
+	 * @param cluster scatter bomblets when it goes off
+	 */
+	public void throwGrenade(float x, float y, float vx, float vy, boolean cluster) {
+		if (mLog != null)
+			mLog.throwGrenade(mSteps, x, y, vx, vy, cluster);
+
+		if (mGrenades.size() == MAX_GRENADES)
+			return;
+
+		Grenade g = newGrenade();
+		releaseGrenade(g, x, y, vx, vy);
+		g.arm(Math.max(1, mGrenadeTimer), BLAST_RADIUS, cluster ? CLUSTER_BOMBLETS : 0);
+		mGrenades.add(g);
+	}
+
+	/**
+	 * Set a body up as a grenade that has just been let go of
+	 */
+	static void releaseGrenade(RigidBody grenade, float x, float y, float vx,
+			float vy) {
+		grenade.placeAt(x, y);
+		grenade.setGravity(GRAVITY);
+		grenade.setElasticity(0.5f);
+		grenade.setFriction(0.5f);
+		grenade.setVelocity(vx, vy);
+	}
+
+	/**
+	 * Set how big grenades are, for bumping into things
+	 */
+	public void setGrenadeSize(int width, int height) {
+		if (mLog != null)
+			mLog.setSize(mSteps, MatchLog.GRENADE, width, height);
+
+		mGrenadeWidth = width;
+		mGrenadeHeight = height;
+	}
+
+	/**
+	 * Set how big a player is, for bumping into things
+	 * @param turn TURN_RED or TURN_BLUE
+	 */
+	public void setPlayerSize(int turn, int width, int height) {
+		if (mLog != null)
+			mLog.setSize(mSteps, turn, width, height);
+
+		getPlayer(turn).setSize(width, height);
+	}
+
+	/**
+	 * Is everything still, so that someone can take a throw?
+	 */
+	public boolean isSettled() {
+		return mGrenades.isEmpty() && !mBluePlayer.getPhysics()
+				&& !mRedPlayer.getPhysics();
+	}
+
+	/**
+	 * Move a RigidBody object and control its bounce as well.
+	 *
+	 * @param body
+	 * @return true if bounced
+	 */
+	private boolean moveBody(RigidBody body) {
+		if (body.getPhysics() == false)
+			return false;
+
+		body.tickPhysics(-1);
+		return moveBody(mTerrain, body, mContact, mWarpPoint);
+	}
+
+	/**
+	 * Move a body one step over the given terrain. The path of the body is
+	 * swept against the terrain, so it bounces where it first touches the
+	 * ground and spends the rest of the step moving away. This only reads
+	 * the terrain, so several threads can move their own bodies over the
+	 * same one.
+	 *
+	 * @param contact scratch space for the sweep
+	 * @param warp scratch space for getting out of the terrain
+	 * @return true if bounced
+	 */
+	public static boolean moveBody(Terrain terrain, RigidBody body, Contact contact,
+			Vector2D warp) {
+		float x0 = body.getX(), y0 = body.getY();
+		body.move(STEP);
+
+		float remaining = 1;
+		int bounces = 0;
+		while (terrain.sweep(x0, y0, body.getX(), body.getY(), contact)) {
+			if (contact.time == 0
+					&& terrain.isIllegal(x0, terrain.getBase() - y0)) {
+				// We started out inside the terrain, so just get out
+				terrain.getWarpPoint(x0, y0, warp);
+				body.setPosition(warp.x, warp.y);
+				body.bounce(terrain, (int) warp.x, (int) warp.y);
+				return true;
+			}
+
+			body.setPosition(contact.x, contact.y);
+			body.bounceNormal(contact.nx, contact.ny);
+
+			if (++bounces == MAX_BOUNCES)
+				break;
+
+			// Spend what is left of the step travelling away from the
+			// contact
+			remaining *= 1 - contact.time;
+			float dt = remaining * STEP / 1000f;
+			x0 = contact.x;
+			y0 = contact.y;
+			body.setPosition(x0 + dt * body.getVX(), y0 + dt * body.getVY());
+		}
+
+		return bounces > 0;
+	}
+
+	public Terrain getTerrain() {
+		return mTerrain;
+	}
+
+	public Player getRedPlayer() {
+		return mRedPlayer;
+	}
+
+	public Player getBluePlayer() {
+		return mBluePlayer;
+	}
+
+	/**
+	 * How many grenades are in the air
+	 */
+	public int getGrenadeCount() {
+		return mGrenades.size();
+	}
+
+	public Grenade getGrenade(int i) {
+		return mGrenades.get(i);
+	}
+
+	/**
+	 * How many frames are left until the grenade in hand goes off
+	 */
+	public int getGrenadeTimer() {
+		return mGrenadeTimer;
+	}
+
+	/**
+	 * How many things are moving: grenades in the air, players bouncing
+	 * around and giblets that haven't settled
+	 */
+	public int getActiveBodyCount() {
+		int count = mGrenades.size() + mGiblets.activeSize();
+		if (mRedPlayer.getPhysics())
+			count++;
+		if (mBluePlayer.getPhysics())
+			count++;
+		return count;
+	}
+
+	public int getStepCount() {
+		return mSteps;
+	}
+
+	public int getCurrentTurn() {
+		return mCurrentTurn;
+	}
+
+	/**
+	 * @param turn TURN_RED or TURN_BLUE
+	 */
+	public Player getPlayer(int turn) {
+		return (turn == TURN_RED) ? mRedPlayer : mBluePlayer;
+	}
+
+	public int getCloudCount() {
+		return mClouds.size();
+	}
+
+	public Cloud getCloud(int i) {
+		return mClouds.get(i);
+	}
+
+	public ParticlePool getGiblets() {
+		return mGiblets;
+	}
+}